@@ -9,12 +9,27 @@ package model;
 public abstract class Connection {
 	
 	protected Node _source;
-	protected Double[] _weight = new Double[1];
-	protected Double[] _prev_weight_chg = new Double[1];
-	protected Double[] _presynaptc_input = new Double[1];
-	protected Double[] _prev_signal_sent = new Double[1];
+	protected double[] _weight = new double[1];
+	protected double[] _prev_weight_chg = new double[1];
+	protected double[] _presynaptc_input = new double[1];
+	protected double[] _prev_signal_sent = new double[1];
+	
+	/**
+	 * Makes this connection share the weight of c, so that changes made to the weight of either affect both. See Network.replicate().
+	 * @param c
+	 */
+	protected void share_weight_with(Connection c){
+		_weight = c._weight;
+		_prev_weight_chg = c._prev_weight_chg;
+		return;
+	}
 	
 	public void set_weight(Double wgt){
+		set_weight(wgt.doubleValue());
+		return;
+	}
+	
+	public void set_weight(double wgt){
 		_prev_weight_chg[0] = wgt - _weight[0];
 		_weight[0] = wgt;
 		return;
@@ -25,12 +40,29 @@ public abstract class Connection {
 	 * @param d
 	 */
 	public void raise_weight(Double d){
+		raise_weight(d.doubleValue());
+		return;
+	}
+	
+	/**
+	 * Increase the weight factor by d. To reduce the weight factor use a negative value for d.
+	 * @param d
+	 */
+	public void raise_weight(double d){
 		_prev_weight_chg[0] = d;
 		_weight[0] += d;
 		return;
 	}
 	
 	public Double get_weight(){
+		return get_weight_value();
+	}
+	
+	/**
+	 * The primitive versions of the getters and setters do not allocate and should be preferred in code that runs every time step.
+	 * @return the weight as a primitive double
+	 */
+	public double get_weight_value(){
 		return _weight[0];
 	}
 	
@@ -59,9 +91,24 @@ public abstract class Connection {
 	 * @return the current presynaptic input to this connection.
 	 */
 	public Double get_presyn_input(){
+		return get_presyn_input_value();
+	}
+	
+	/**
+	 * @return the current presynaptic input to this connection as a primitive double
+	 */
+	public double get_presyn_input_value(){
 		return _presynaptc_input[0];
 	}
 	
+	/**
+	 * Often neural networks are run many times. This method clears the presynaptic input and the previous signal between trials. The weight is kept.
+	 */
+	public void reset_connection(){
+		_presynaptc_input[0] = 0.0;
+		_prev_signal_sent[0] = 0.0;
+	}
+	
 	/**
 	 * There is no set() method for the source as it should not be changed once assigned in the constructor method.
 	 * @return
@@ -71,16 +118,30 @@ public abstract class Connection {
 	}
 	
 	public Double get_prev_wgt_chg(){
+		return get_prev_wgt_chg_value();
+	}
+	
+	/**
+	 * @return the most recent weight change as a primitive double
+	 */
+	public double get_prev_wgt_chg_value(){
 		return _prev_weight_chg[0];
 	}
 	
+	/**
+	 * @return the weighted signal delivered by the most recent call to send()
+	 */
+	public double get_prev_signal_sent_value(){
+		return _prev_signal_sent[0];
+	}
+	
 	/**
 	 * send() must be defined in each subclass. This is a dummy function to foster consistent naming within the interfaces of the subclasses.
 	 * @return the input from _source
 	 */
 	public double send(){
 		System.out.println("Alert! Your model is using a superclass function that does not have access to vital parameter values. You must define the function send() in the subclasses where the parameter vaules are accessable.");
-		_prev_signal_sent[0] = _source.output();
-		return _source.output();
+		_prev_signal_sent[0] = _source.output_value();
+		return _source.output_value();
 	}
 }
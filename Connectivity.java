@@ -0,0 +1,64 @@
+package model;
+
+import java.util.*;
+
+/**
+ * Helper functions shared by the random connection generators of Synaptic_Connection, Presynaptic_Connection and Projection.
+ * Rather than drawing a random number for every source/receiver pair, the gap to the next connection of a row is drawn from the geometric distribution,
+ * so the work done is proportional to the number of connections created. Every row has its own random stream derived from the seed and the row index,
+ * which makes the result reproducible from the seed no matter how the rows are split between threads.
+ * @author Scaed
+ *
+ */
+public final class Connectivity {
+
+	private Connectivity(){
+	}
+
+	/**
+	 * @param seed
+	 * @param row
+	 * @return the random stream used for the connections of the given source row.
+	 */
+	public static SplittableRandom row_rng(long seed, int row){
+		return new SplittableRandom(mix(seed + 0x9E3779B97F4A7C15L * (row + 1)));
+	}
+
+	/**
+	 * Finds the next receiver of a row to be connected.
+	 * @param rng the random stream of the row
+	 * @param current the index of the previous connected receiver, or -1 at the start of a row
+	 * @param prob the probability that a connection will be created between a given source/receiver pair
+	 * @return the index of the next connected receiver. This can be past the end of the row, in which case the row is complete.
+	 */
+	public static long next(SplittableRandom rng, long current, double prob){
+		if(prob >= 1.0){
+			return current + 1;
+		}
+		if(prob <= 0.0){
+			return Long.MAX_VALUE;
+		}
+		//log1p keeps its precision for the very small probabilities of large sparse networks, where 1.0 - prob rounds away most of the digits of prob
+		double gap = Math.floor(Math.log1p(-rng.nextDouble()) / Math.log1p(-prob));
+		if(gap >= Integer.MAX_VALUE){
+			return Long.MAX_VALUE;
+		}
+		return current + 1 + (long)gap;
+	}
+
+	/**
+	 * @return a weight drawn from a Gaussian distribution of the given mean and standard deviation.
+	 */
+	public static double weight(SplittableRandom rng, double mean, double stdv){
+		return mean + rng.nextGaussian() * stdv;
+	}
+
+	/**
+	 * The SplitMix64 finaliser, used to turn consecutive seeds into unrelated ones.
+	 */
+	static long mix(long z){
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
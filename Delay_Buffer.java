@@ -0,0 +1,181 @@
+package model;
+
+import java.util.*;
+
+/**
+ * A circular buffer of input that is still travelling along delayed connections, one slot per time step and one column per target.
+ * A signal sent with delay d is written into the slot of step t+1+d, where t is the last step the targets consumed, and each target takes its slot at the start of every step.
+ * A delay of 0 is therefore the next step, the same as an undelayed connection. The memory used is (max_delay + 1) * targets doubles no matter how many connections write into the buffer.
+ * Slots are laid out slot by slot so that a population takes the input of a range of neurons from one contiguous block.
+ * @author Scaed
+ *
+ */
+public class Delay_Buffer {
+
+	private final int _targets;
+	private int _length; //max delay + 1
+	private double[] _slots; //slot * _targets + target
+	private int _now = 0; //the step the targets last consumed
+	private int _pending_until = -1; //no input arrives after this step
+
+	/**
+	 * @param targets the number of targets the buffer holds input for
+	 * @param max_delay the longest delay, in time steps, that will be written into the buffer
+	 */
+	public Delay_Buffer(int targets, int max_delay){
+		if(max_delay < 0){
+			throw new IllegalArgumentException("A delay cannot be negative: " + max_delay);
+		}
+		_targets = targets;
+		_length = max_delay + 1;
+		_slots = new double[_length * targets];
+	}
+
+	public int targets(){
+		return _targets;
+	}
+
+	public int max_delay(){
+		return _length - 1;
+	}
+
+	/**
+	 * Grows the buffer so that it can hold delays of up to max_delay. Input already in the buffer keeps its arrival time.
+	 * @param max_delay
+	 */
+	public void ensure_delay(int max_delay){
+		if(max_delay < 0){
+			throw new IllegalArgumentException("A delay cannot be negative: " + max_delay);
+		}
+		if(max_delay < _length){
+			return;
+		}
+		int length = max_delay + 1;
+		double[] slots = new double[length * _targets];
+		for(int s = 1; s <= _length; s++){
+			System.arraycopy(_slots, slot(_now + s, _length), slots, slot(_now + s, length), _targets);
+		}
+		_slots = slots;
+		_length = length;
+		return;
+	}
+
+	/**
+	 * Adds v to the input target receives delay steps after the next one.
+	 * @param target
+	 * @param delay between 0 and max_delay()
+	 * @param v
+	 */
+	public void add(int target, int delay, double v){
+		_slots[slot(_now + 1 + delay, _length) + target] += v;
+		if(v != 0.0){
+			_pending_until = _now + _length; //the same for every add() of a step, so concurrent writers agree
+		}
+		return;
+	}
+
+	/**
+	 * Moves the buffer on to the next time step. Must be called once per step, before the input of the step is taken.
+	 */
+	public void advance(){
+		_now++;
+		return;
+	}
+
+	/**
+	 * @param target
+	 * @return the input that arrives at target in the current time step. The slot is cleared so that it can be reused.
+	 */
+	public double take(int target){
+		int s = slot(_now, _length) + target;
+		double v = _slots[s];
+		_slots[s] = 0.0;
+		return v;
+	}
+
+	/**
+	 * Adds the input that arrives in the current time step to input[from, to) and clears it from the buffer.
+	 * @param input indexed by target
+	 * @param from
+	 * @param to
+	 */
+	public void take(double[] input, int from, int to){
+		int base = slot(_now, _length);
+		for(int i = from; i < to; i++){
+			input[i] += _slots[base + i];
+			_slots[base + i] = 0.0;
+		}
+		return;
+	}
+
+	/**
+	 * A quick test that may report input that has already arrived for up to max_delay() steps, but never misses input that has not.
+	 * @return true if any input may still be on its way to a target, including input arriving in the current step.
+	 */
+	public boolean has_pending(){
+		return _pending_until >= _now;
+	}
+
+	/**
+	 * @param target
+	 * @return true if any input is still on its way to target.
+	 */
+	public boolean has_pending(int target){
+		for(int s = target; s < _slots.length; s += _targets){
+			if(_slots[s] != 0.0){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Drops the pending input of every target and restarts the buffer at step 0.
+	 */
+	public void clear(){
+		Arrays.fill(_slots, 0.0);
+		_now = 0;
+		_pending_until = -1;
+		return;
+	}
+
+	/**
+	 * Drops the pending input of a single target.
+	 * @param target
+	 */
+	public void clear(int target){
+		for(int s = target; s < _slots.length; s += _targets){
+			_slots[s] = 0.0;
+		}
+		return;
+	}
+
+	/**
+	 * @return the step the targets last consumed, see Network_Snapshot.
+	 */
+	int now(){
+		return _now;
+	}
+
+	/**
+	 * Restores the clock of the buffer, see Network_Snapshot.
+	 * @param now
+	 */
+	void set_now(int now){
+		_now = now;
+		_pending_until = now + _length;
+		return;
+	}
+
+	/**
+	 * The returned array is the live storage of the buffer, see Network_Snapshot.
+	 * @return the slots of the buffer
+	 */
+	double[] slots(){
+		return _slots;
+	}
+
+	private int slot(int time, int length){
+		return Math.floorMod(time, length) * _targets;
+	}
+}
@@ -0,0 +1,247 @@
+package model;
+
+/**
+ * A single precision version of Spiking_Population for large runs where memory bandwidth rather than precision limits the speed.
+ * The membrane potential, u, input and transmitter outputs are kept in float columns and integrated in float arithmetic with the same equations and
+ * the same Neuron_Type parameters, rounded to float. The kernel tables are read as floats, see Kernel_Table.float_values().
+ * Each neuron then streams half as many bytes per time step and the SIMD kernel updates twice as many neurons per instruction.
+ * The noise is drawn from Noise_Source exactly as in Spiking_Population, so a float and a double population with the same seed see the same noise
+ * and any difference between them comes from rounding alone. Precision_Validation in the tasks package measures how far the two drift apart.
+ * Everything that does not depend on the precision, such as the spike histories, the clock, the noise seed and the kernels, is in Neuron_Population.
+ * Float populations are connected with Float_Projection and do not support node views, recursive output, delays or fast-forward.
+ * @author Scaed
+ *
+ */
+public class Float_Population extends Neuron_Population {
+
+	protected final float[] _membrane_potential;
+	protected final float[] _u;
+	protected final float[] _input;
+	protected final float[] _glut_output;
+	protected final float[] _gaba_output;
+
+	protected final float _mp_spike_threshold;
+	protected final float _u_spike_threshold_factor;
+	protected final float _mp_rest;
+	protected final float _mp_rest_u;
+	protected final float _threshold;
+	protected final float _reset;
+	protected final float _u_spike_add;
+	protected final float _k;
+	protected final float _C;
+	protected final float _a;
+	protected final float _b_1;
+	protected final float _b_2;
+	protected final float _b_threshold;
+
+	private float[] _noise; //scratch space for the SIMD kernel
+	private boolean[] _spiked;
+
+	/**
+	 * @param size the number of neurons in the population
+	 * @param type the parameters of the kind of neuron, see Neuron_Type
+	 */
+	protected Float_Population(int size, Neuron_Type type){
+		super(size, type);
+		_mp_spike_threshold = (float)type.mp_spike_threshold();
+		_u_spike_threshold_factor = (float)type.u_spike_threshold_factor();
+		_mp_rest = (float)type.mp_rest();
+		_mp_rest_u = (float)type.mp_rest_u();
+		_threshold = (float)type.threshold();
+		_reset = (float)type.reset();
+		_u_spike_add = (float)type.u_spike_add();
+		_k = (float)type.k();
+		_C = (float)type.C();
+		_a = (float)type.a();
+		_b_1 = (float)type.b_1();
+		_b_2 = (float)type.b_2();
+		_b_threshold = (float)type.b_threshold();
+
+		_membrane_potential = new float[size];
+		_u = new float[size];
+		_input = new float[size];
+		_glut_output = new float[size];
+		_gaba_output = new float[size];
+		reset_population();
+	}
+
+	/**
+	 * @param type
+	 * @param size the number of neurons in the population
+	 * @return a single precision population of neurons of the given type
+	 */
+	public static Float_Population of(Neuron_Type type, int size){
+		return new Float_Population(size, type);
+	}
+
+	/**
+	 * Creates a population of the same kind and settings as this one, with its own state and noise seed.
+	 * @return a new population in its reset state
+	 */
+	public Float_Population replicate(){
+		Float_Population p = new Float_Population(_size, _type);
+		copy_settings_to(p);
+		p.set_vectorized(_vectorized);
+		return p;
+	}
+
+	public void reset_neuron(int i){
+		_input[i] = 0.0f;
+		_glut_output[i] = 0.0f;
+		_gaba_output[i] = 0.0f;
+		_u[i] = (float)Spiking_Node._u_rest;
+		_membrane_potential[i] = _mp_rest;
+		_spike_times[i].clear();
+	}
+
+	public void integrate(int from, int to){
+		if(_vectorized){
+			integrate_vectorized(from, to);
+			return;
+		}
+		for(int i = from; i < to; i++){
+			integrate(i, (float)noise(i)); //the noise Spiking_Population uses, rounded to float
+		}
+	}
+
+	/**
+	 * Advances neuron i by a single time step with the given noise, in float arithmetic.
+	 * @param i
+	 * @param _err
+	 */
+	private void integrate(int i, float _err){
+		final float[] mp = _membrane_potential;
+		final float[] u = _u;
+		final float[] input = _input;
+		float u_change;
+		if(mp[i] <= _b_threshold){
+			u_change = _a * (_b_1 * (mp[i] - _mp_rest_u) - u[i]);
+		}
+		else{
+			u_change = _a * (_b_2 * (mp[i] - _mp_rest_u) - u[i]);
+		}
+		float mp_change = ((_k * (mp[i] - _mp_rest) * (mp[i] - _threshold)) - u[i] + input[i] + _err) / _C;
+
+		input[i] = 0.0f;
+		_glut_output[i] = 0.0f;
+		_gaba_output[i] = 0.0f;
+		mp[i] += mp_change;
+		u[i] += u_change;
+
+		if(mp[i] >= (_mp_spike_threshold + (_u_spike_threshold_factor * u[i]))){
+			record_spike(i);
+			mp[i] = _reset - (_u_spike_threshold_factor * u[i]);
+			u[i] += _u_spike_add;
+		}
+
+		calc_output(i);
+	}
+
+	/**
+	 * As Spiking_Population.integrate_vectorized(), with Float_Vector_Kernel updating twice as many neurons per vector as the double kernel.
+	 */
+	private void integrate_vectorized(int from, int to){
+		for(int i = from; i < to; i++){
+			_noise[i] = (float)noise(i);
+		}
+		int done = Float_Vector_Kernel.integrate(this, from, to, _noise, _spiked);
+		for(int i = from; i < done; i++){
+			if(_spiked[i]){
+				record_spike(i);
+			}
+			calc_output(i);
+		}
+		for(int i = done; i < to; i++){
+			integrate(i, _noise[i]);
+		}
+	}
+
+	/**
+	 * Switches the integration of the population between the per neuron loop and the SIMD kernel of Float_Vector_Kernel. Both give identical results.
+	 * See Spiking_Population.set_vectorized().
+	 * @param vectorized
+	 * @return true if the SIMD kernel is in use
+	 */
+	public boolean set_vectorized(boolean vectorized){
+		_vectorized = vectorized && _vector_api_available;
+		if(_vectorized && _noise == null){
+			_noise = new float[_size];
+			_spiked = new boolean[_size];
+		}
+		return _vectorized;
+	}
+
+	/**
+	 * The calc_output() method of Spiking_Population with the kernel tables read as floats.
+	 * @param i
+	 */
+	protected void calc_output(int i){
+		final float[] glut_curve = _glut_kernel.float_values();
+		final float[] gaba_curve = _gaba_kernel.float_values();
+		final Spike_History times = _spike_times[i];
+		final int count = times.size();
+		boolean glut_done = false;
+		boolean gaba_done = false;
+		float glut = 0.0f;
+		float gaba = 0.0f;
+		for(int s = 0; s < count; s++){
+			int alpha_curve_idx = (_t - times.get(s)) + 1;
+			if(!glut_done){
+				if(alpha_curve_idx >= glut_curve.length){
+					glut_done = true;
+				}
+				else{
+					glut += glut_curve[alpha_curve_idx];
+				}
+			}
+			if(!gaba_done){
+				if(alpha_curve_idx >= gaba_curve.length){
+					gaba_done = true;
+				}
+				else{
+					gaba += gaba_curve[alpha_curve_idx];
+				}
+			}
+			if(glut_done && gaba_done){
+				break;
+			}
+		}
+		_glut_output[i] += glut;
+		_gaba_output[i] += gaba;
+	}
+
+	public double input(int i){
+		return _input[i];
+	}
+
+	public void set_input_to(int i, double d){
+		_input[i] = (float)d;
+		return;
+	}
+
+	/**
+	 * Increase the input of neuron i by d. The sum is rounded to float.
+	 * @param i
+	 * @param d
+	 */
+	public void raise_input_by(int i, double d){
+		_input[i] += (float)d;
+		return;
+	}
+
+	public double membrane_potential(int i){
+		return _membrane_potential[i];
+	}
+
+	public double u(int i){
+		return _u[i];
+	}
+
+	public double glut_output(int i){
+		return _glut_output[i];
+	}
+
+	public double gaba_output(int i){
+		return _gaba_output[i];
+	}
+}
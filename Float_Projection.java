@@ -0,0 +1,205 @@
+package model;
+
+/**
+ * The synapses from one Float_Population to another, in the same compressed sparse row form as Projection but with the weights kept as floats.
+ * A float projection is made from an existing Projection, so a float network can be wired exactly like its double counterpart, see of().
+ * The rows and target indices are shared with that projection, only the weights are copied. Delays are not supported.
+ * Like Projection it can also be delivered one range of targets at a time, which is how a Network with a worker pool delivers it, see deliver_targets().
+ * @author Scaed
+ *
+ */
+public class Float_Projection {
+
+	protected final Float_Population _source;
+	protected final Float_Population _target;
+	protected final int[] _row_start;
+	protected final int[] _target_index;
+	protected final float[] _weight;
+
+	private volatile int[] _col_start; //synapses grouped by target, built only when needed for parallel delivery, see Projection.build_columns()
+	private int[] _col_synapse;
+	private int[] _col_source;
+
+	private Float_Projection(int[] row_start, int[] target_index, float[] weight, Float_Population src, Float_Population tgt){
+		_source = src;
+		_target = tgt;
+		_row_start = row_start;
+		_target_index = target_index;
+		_weight = weight;
+	}
+
+	/**
+	 * Creates a float projection with the synapses of p, its weights rounded to float.
+	 * @param p
+	 * @param src a population of the same size as the source of p
+	 * @param tgt a population of the same size as the target of p
+	 * @return the new projection
+	 * @throws IllegalArgumentException if the sizes differ or p has delays
+	 */
+	public static Float_Projection of(Projection p, Float_Population src, Float_Population tgt){
+		if(src.size() != p._source.size() || tgt.size() != p._target.size()){
+			throw new IllegalArgumentException("A float projection needs populations of the same sizes as the projection it is made from.");
+		}
+		if(p.max_delay() > 0){
+			throw new IllegalArgumentException("Float projections do not support delays.");
+		}
+		float[] weight = new float[p._weight.length];
+		for(int k = 0; k < weight.length; k++){
+			weight[k] = (float)p._weight[k];
+		}
+		return new Float_Projection(p._row_start, p._target_index, weight, src, tgt);
+	}
+
+	/**
+	 * Creates a projection between src and tgt that shares the synapses and weights of this one, see Network.replicate().
+	 * @param src a population of the same size as the source of this projection
+	 * @param tgt a population of the same size as the target of this projection
+	 * @return the new projection
+	 */
+	public Float_Projection replicate(Float_Population src, Float_Population tgt){
+		if(src.size() != _source.size() || tgt.size() != _target.size()){
+			throw new IllegalArgumentException("A projection can only be replicated between populations of the same sizes.");
+		}
+		Float_Projection p = new Float_Projection(_row_start, _target_index, _weight, src, tgt);
+		if(_col_start != null){
+			p._col_synapse = _col_synapse;
+			p._col_source = _col_source;
+			p._col_start = _col_start;
+		}
+		return p;
+	}
+
+	public Float_Population get_source(){
+		return _source;
+	}
+
+	public Float_Population get_target(){
+		return _target;
+	}
+
+	public int synapse_count(){
+		return _weight.length;
+	}
+
+	/**
+	 * @param i
+	 * @return the index of the first outgoing synapse of source neuron i. The outgoing synapses of i end at row_start(i + 1).
+	 */
+	public int row_start(int i){
+		return _row_start[i];
+	}
+
+	/**
+	 * @return the number of synapses whose source has a transmitter output, which are the synapses deliver() does not skip, see Network_Metrics.
+	 */
+	long active_synapse_count(){
+		long count = 0;
+		for(int i = 0; i < _source._size; i++){
+			if(_source._glut_output[i] > 0.0f || _source._gaba_output[i] > 0.0f){
+				count += _row_start[i + 1] - _row_start[i];
+			}
+		}
+		return count;
+	}
+
+	public double get_weight(int k){
+		return _weight[k];
+	}
+
+	public void set_weight(int k, double wgt){
+		_weight[k] = (float)wgt;
+		return;
+	}
+
+	/**
+	 * This method advances the projection by one time step, delivering the output of every source neuron to the input of its targets.
+	 */
+	public void deliver(){
+		for(int i = 0; i < _source._size; i++){
+			deliver_row(i);
+		}
+	}
+
+	/**
+	 * Delivers the output of source neuron i through its outgoing synapses, see Projection.deliver_row().
+	 * The rows of silent sources are skipped, so the work scales with activity in either delivery mode of the network.
+	 * @param i
+	 */
+	public void deliver_row(int i){
+		final float glut = _source._glut_output[i];
+		final float gaba = _source._gaba_output[i];
+		if(!(glut > 0.0f || gaba > 0.0f)){
+			return; //a silent source only adds 0 to its targets
+		}
+		final float[] input = _target._input;
+		for(int k = _row_start[i]; k < _row_start[i + 1]; k++){
+			float w = _weight[k];
+			float signal = (w < 0) ? gaba : glut;
+			if(signal < 0.0f){
+				signal = 0.0f;
+			}
+			input[_target_index[k]] += signal * w;
+		}
+	}
+
+	/**
+	 * Delivers to the target neurons in the index range [from, to) only. Each target receives its inputs in the same order as deliver() and
+	 * the synapses of silent sources are skipped as in deliver_row(), so delivering disjoint ranges at the same time gives a bit-identical result.
+	 * @param from
+	 * @param to
+	 */
+	public void deliver_targets(int from, int to){
+		if(_col_start == null){
+			build_columns();
+		}
+		final float[] glut = _source._glut_output;
+		final float[] gaba = _source._gaba_output;
+		final float[] input = _target._input;
+		final int[] col_start = _col_start;
+		final int[] source_of = _col_source;
+		for(int j = from; j < to; j++){
+			for(int c = col_start[j]; c < col_start[j + 1]; c++){
+				int i = source_of[c];
+				if(!(glut[i] > 0.0f || gaba[i] > 0.0f)){
+					continue;
+				}
+				float w = _weight[_col_synapse[c]];
+				float signal = (w < 0) ? gaba[i] : glut[i];
+				if(signal < 0.0f){
+					signal = 0.0f;
+				}
+				input[j] += signal * w;
+			}
+		}
+	}
+
+	/**
+	 * Builds the target grouped ordering of the synapses, see Projection.build_columns().
+	 */
+	synchronized void build_columns(){
+		if(_col_start != null){
+			return;
+		}
+		int[] col_start = new int[_target._size + 1];
+		int[] col_synapse = new int[_weight.length];
+		int[] col_source = new int[_weight.length];
+		for(int k = 0; k < _target_index.length; k++){
+			col_start[_target_index[k] + 1]++;
+		}
+		for(int j = 0; j < _target._size; j++){
+			col_start[j + 1] += col_start[j];
+		}
+		int[] next = new int[_target._size];
+		for(int i = 0; i < _source._size; i++){
+			for(int k = _row_start[i]; k < _row_start[i + 1]; k++){
+				int j = _target_index[k];
+				int c = col_start[j] + next[j]++;
+				col_synapse[c] = k;
+				col_source[c] = i;
+			}
+		}
+		_col_synapse = col_synapse;
+		_col_source = col_source;
+		_col_start = col_start;
+	}
+}
@@ -0,0 +1,66 @@
+package model;
+
+import jdk.incubator.vector.*;
+
+/**
+ * The integration step of Float_Population written with the Java Vector API. It is Vector_Kernel in float lanes, so each vector holds twice as many neurons.
+ * Every lane performs the same operations in the same order as Float_Population.integrate(), without fused multiply-adds, so the results are bit-identical.
+ * This class needs the jdk.incubator.vector module and is only loaded when Float_Population.set_vectorized() has found it.
+ * @author Scaed
+ *
+ */
+final class Float_Vector_Kernel {
+
+	private static final VectorSpecies<Float> _species = FloatVector.SPECIES_PREFERRED;
+
+	private Float_Vector_Kernel(){
+	}
+
+	/**
+	 * Advances the neurons of p from index from by one time step, one vector at a time, stopping before the range [from, to) runs out of whole vectors.
+	 * Spikes are not recorded and the outputs are not calculated, which is left to the caller.
+	 * @param p
+	 * @param from
+	 * @param to
+	 * @param noise the noise of each neuron for this time step
+	 * @param spiked set to whether each neuron spiked
+	 * @return the index of the first neuron that was not advanced
+	 */
+	static int integrate(Float_Population p, int from, int to, float[] noise, boolean[] spiked){
+		final float[] mp = p._membrane_potential;
+		final float[] u = p._u;
+		final float[] input = p._input;
+		final float[] glut = p._glut_output;
+		final float[] gaba = p._gaba_output;
+		final FloatVector zero = FloatVector.zero(_species);
+		final FloatVector b_1 = FloatVector.broadcast(_species, p._b_1);
+		final FloatVector b_2 = FloatVector.broadcast(_species, p._b_2);
+
+		int i = from;
+		for(int end = from + _species.loopBound(to - from); i < end; i += _species.length()){
+			FloatVector v_mp = FloatVector.fromArray(_species, mp, i);
+			FloatVector v_u = FloatVector.fromArray(_species, u, i);
+			FloatVector v_in = FloatVector.fromArray(_species, input, i);
+			FloatVector v_err = FloatVector.fromArray(_species, noise, i);
+
+			FloatVector b = b_2.blend(b_1, v_mp.compare(VectorOperators.LE, p._b_threshold));
+			FloatVector u_change = b.mul(v_mp.sub(p._mp_rest_u)).sub(v_u).mul(p._a);
+			FloatVector mp_change = v_mp.sub(p._mp_rest).mul(p._k).mul(v_mp.sub(p._threshold)).sub(v_u).add(v_in).add(v_err).div(p._C);
+
+			v_mp = v_mp.add(mp_change);
+			v_u = v_u.add(u_change);
+			VectorMask<Float> spike = v_mp.compare(VectorOperators.GE, v_u.mul(p._u_spike_threshold_factor).add(p._mp_spike_threshold));
+			FloatVector u_reset = v_u.mul(p._u_spike_threshold_factor);
+			v_mp = v_mp.blend(u_reset.neg().add(p._reset), spike);
+			v_u = v_u.blend(v_u.add(p._u_spike_add), spike);
+
+			v_mp.intoArray(mp, i);
+			v_u.intoArray(u, i);
+			zero.intoArray(input, i);
+			zero.intoArray(glut, i);
+			zero.intoArray(gaba, i);
+			spike.intoArray(spiked, i);
+		}
+		return i;
+	}
+}
@@ -0,0 +1,159 @@
+package model;
+
+import java.util.concurrent.*;
+
+/**
+ * A precalculated synaptic kernel: the concentration of neurotransmitter left n time steps after a single spike, see Spiking_Node.calc_output().
+ * Tables are stored as primitive arrays that stop at the first point past the peak of the curve that falls below the precision, as those points are never read.
+ * Tables are built lazily and at most once per (shape, lambda, precision) and are then shared by every node and population that uses the same kernel.
+ * @author Scaed
+ *
+ */
+public final class Kernel_Table {
+
+	/**
+	 * ALPHA is (n/lambda)*e^(1-n/lambda), which peaks at n = lambda. EXPONENTIAL is e^(-(n-1)/lambda), which peaks at n = 1.
+	 */
+	public enum Shape { ALPHA, EXPONENTIAL }
+
+	private static final ConcurrentHashMap<Key, Kernel_Table> _cache = new ConcurrentHashMap<Key, Kernel_Table>();
+
+	private final Shape _shape;
+	private final double _lambda;
+	private final double _precision;
+	private final double[] _values;
+	private volatile float[] _float_values; //built on first use, see float_values()
+
+	private Kernel_Table(Shape shape, double lambda, double precision){
+		_shape = shape;
+		_lambda = lambda;
+		_precision = precision;
+		int peak = (shape == Shape.ALPHA) ? (int)lambda : 1;
+		int max_length = Spiking_Node._max_act_durr * (int)Math.ceil(lambda);
+		int length = max_length;
+		for(int i = peak + 1; i < max_length; i++){
+			if(value_at(i) < precision){
+				length = i;
+				break;
+			}
+		}
+		_values = new double[length];
+		for(int i = 0; i < length; i++){
+			_values[i] = value_at(i);
+		}
+	}
+
+	/**
+	 * @param shape
+	 * @param lambda the time constant of the kernel in time steps
+	 * @param precision kernel values past the peak below this are treated as 0
+	 * @return the shared table for the given kernel, building it if this is the first request.
+	 */
+	public static Kernel_Table get(Shape shape, double lambda, double precision){
+		return _cache.computeIfAbsent(new Key(shape, lambda, precision), k -> new Kernel_Table(k._shape, k._lambda, k._precision));
+	}
+
+	/**
+	 * @param lambda
+	 * @return the shared alpha kernel with time constant lambda and the default precision of Spiking_Node._min_alpha_value.
+	 */
+	public static Kernel_Table alpha(double lambda){
+		return get(Shape.ALPHA, lambda, Spiking_Node._min_alpha_value);
+	}
+
+	private double value_at(int i){
+		if(_shape == Shape.ALPHA){
+			return ((double)i / _lambda) * Math.exp(1 - (double)i / _lambda);
+		}
+		else{
+			return (i == 0) ? 0.0 : Math.exp(-(double)(i - 1) / _lambda);
+		}
+	}
+
+	public Shape shape(){
+		return _shape;
+	}
+
+	public double lambda(){
+		return _lambda;
+	}
+
+	public double precision(){
+		return _precision;
+	}
+
+	/**
+	 * @return the number of entries kept. A spike at least this many time steps old no longer contributes.
+	 */
+	public int length(){
+		return _values.length;
+	}
+
+	/**
+	 * The returned array is shared and must not be modified.
+	 * @return the kernel values, indexed by the time since the spike plus 1.
+	 */
+	public double[] values(){
+		return _values;
+	}
+
+	/**
+	 * The kernel values rounded to float for Float_Population. The returned array is shared and must not be modified.
+	 * @return the kernel values, indexed by the time since the spike plus 1.
+	 */
+	public float[] float_values(){
+		float[] values = _float_values;
+		if(values == null){
+			values = new float[_values.length];
+			for(int i = 0; i < values.length; i++){
+				values[i] = (float)_values[i];
+			}
+			_float_values = values;
+		}
+		return values;
+	}
+
+	/**
+	 * @return r = e^(-1/lambda), the factor the recursive form of the kernel decays by each time step.
+	 */
+	public double decay(){
+		return Math.exp(-1.0 / _lambda);
+	}
+
+	/**
+	 * The alpha kernel equals scale()*n*r^n and the exponential kernel equals scale()*r^n.
+	 * @return the factor applied to the recursive state to give the kernel value.
+	 */
+	public double scale(){
+		if(_shape == Shape.ALPHA){
+			return Math.E / _lambda;
+		}
+		else{
+			return 1.0 / decay();
+		}
+	}
+
+	private static final class Key {
+		private final Shape _shape;
+		private final double _lambda;
+		private final double _precision;
+
+		Key(Shape shape, double lambda, double precision){
+			_shape = shape;
+			_lambda = lambda;
+			_precision = precision;
+		}
+
+		public boolean equals(Object o){
+			if(!(o instanceof Key)){
+				return false;
+			}
+			Key k = (Key)o;
+			return _shape == k._shape && Double.compare(_lambda, k._lambda) == 0 && Double.compare(_precision, k._precision) == 0;
+		}
+
+		public int hashCode(){
+			return (_shape.hashCode() * 31 + Double.hashCode(_lambda)) * 31 + Double.hashCode(_precision);
+		}
+	}
+}
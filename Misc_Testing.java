@@ -1,5 +1,10 @@
 package tasks;
 
+import java.io.*;
+import java.lang.management.*;
+import java.nio.file.*;
+import java.util.*;
+
 import model.*;
 
 public class Misc_Testing {
@@ -8,6 +13,48 @@ public class Misc_Testing {
 		cell_test();
 		System.out.println();
 		connection_test();
+		System.out.println();
+		population_test();
+		System.out.println();
+		allocation_test();
+		System.out.println();
+		recursive_output_test();
+		System.out.println();
+		network_test();
+		System.out.println();
+		parallel_test();
+		System.out.println();
+		projection_test();
+		System.out.println();
+		connectivity_test();
+		System.out.println();
+		event_driven_test();
+		System.out.println();
+		dispatcher_test();
+		System.out.println();
+		vector_test();
+		System.out.println();
+		noise_test();
+		System.out.println();
+		trial_runner_test();
+		System.out.println();
+		snapshot_test();
+		System.out.println();
+		recorder_test();
+		System.out.println();
+		probe_test();
+		System.out.println();
+		instrumentation_test();
+		System.out.println();
+		stdp_test();
+		System.out.println();
+		delay_test();
+		System.out.println();
+		fast_forward_test();
+		System.out.println();
+		neuron_type_test();
+		System.out.println();
+		float_test();
 	}
 	
 	private static void cell_test(){
@@ -29,10 +76,10 @@ public class Misc_Testing {
 			gp_cell.step();
 		}
 		
-		System.out.println("Number of spikes by a pyramidal neuron after 200ms of 1000mA excitatory input: " + p_cell.DEBUG_get_spike_times().size());
-		System.out.println("Number of spikes by a thalamic neuron after 200ms of 1000mA excitatory input: " + t_cell.DEBUG_get_spike_times().size());
-		System.out.println("Number of spikes by a striatal neuron after 200ms of 1000mA excitatory input: " + s_cell.DEBUG_get_spike_times().size());
-		System.out.println("Number of spikes by a globus pallidus neuron after 200ms of 1000mA excitatory input: " + gp_cell.DEBUG_get_spike_times().size());
+		System.out.println("Number of spikes by a pyramidal neuron after 200ms of 1000mA excitatory input: " + p_cell.count_spikes_since(0));
+		System.out.println("Number of spikes by a thalamic neuron after 200ms of 1000mA excitatory input: " + t_cell.count_spikes_since(0));
+		System.out.println("Number of spikes by a striatal neuron after 200ms of 1000mA excitatory input: " + s_cell.count_spikes_since(0));
+		System.out.println("Number of spikes by a globus pallidus neuron after 200ms of 1000mA excitatory input: " + gp_cell.count_spikes_since(0));
 		return;
 	}
 	
@@ -42,7 +89,7 @@ public class Misc_Testing {
 		for(int i = 0; i < 200; i++){
 			p_cell_1.step();
 		}
-		System.out.println("Number of spikes by a pyramidal neuron after 200ms of no input: " + p_cell_1.DEBUG_get_spike_times().size());
+		System.out.println("Number of spikes by a pyramidal neuron after 200ms of no input: " + p_cell_1.count_spikes_since(0));
 		
 		p_cell_1.reset_node();
 		Spiking_Pyramidal_Node p_cell_2 = new Spiking_Pyramidal_Node();
@@ -53,7 +100,7 @@ public class Misc_Testing {
 			p_cell_2.step();
 			s_conn.send();
 		}
-		System.out.println("Number of spikes by a pyramidal neuron after 200ms of excitatory input from an active neuron: " + p_cell_1.DEBUG_get_spike_times().size());
+		System.out.println("Number of spikes by a pyramidal neuron after 200ms of excitatory input from an active neuron: " + p_cell_1.count_spikes_since(0));
 		
 		p_cell_1.reset_node();
 		p_cell_2.reset_node();
@@ -68,8 +115,1193 @@ public class Misc_Testing {
 			p_conn.send();
 			s_conn.send();
 		}
-		System.out.println("Number of spikes by a pyramidal neuron after 200ms of excitatory input from an active neuron presynaptically inhibited by another active cell: " + p_cell_1.DEBUG_get_spike_times().size());
+		System.out.println("Number of spikes by a pyramidal neuron after 200ms of excitatory input from an active neuron presynaptically inhibited by another active cell: " + p_cell_1.count_spikes_since(0));
+		
+		return;
+	}
+	
+	private static void population_test(){
+		Spiking_Population t_pop = Spiking_Population.thalamic(100);
+		Spiking_Population s_pop = Spiking_Population.striatal(100);
+		Spiking_Population gp_pop = Spiking_Population.gp(100);
+		Spiking_Population p_pop = Spiking_Population.pyramidal(100);
+		Spiking_Pyramidal_Node p_cell = new Spiking_Pyramidal_Node();
+		Spiking_Thalamic_Node t_cell = new Spiking_Thalamic_Node();
+		Spiking_Striatal_Node s_cell = new Spiking_Striatal_Node();
+		Spiking_GP_Node gp_cell = new Spiking_GP_Node();
+		
+		for(int i = 0; i < 200; i++){
+			//Only the last neuron of each population receives the same input as the single cells
+			t_pop.set_input_to(99, 1000.0);
+			s_pop.set_input_to(99, 1000.0);
+			gp_pop.node(99).set_input_to(1000.0);
+			p_pop.set_input_to(99, 1000.0);
+			p_cell.set_input_to(1000.0);
+			t_cell.set_input_to(1000.0);
+			s_cell.set_input_to(1000.0);
+			gp_cell.set_input_to(1000.0);
+			
+			t_pop.step_all();
+			s_pop.step_all();
+			gp_pop.step_all();
+			p_pop.step_all();
+			p_cell.step();
+			t_cell.step();
+			s_cell.step();
+			gp_cell.step();
+		}
+		
+		System.out.println("Population matches a single thalamic neuron after 200ms of 1000mA excitatory input: " + (t_pop.membrane_potential(99) == t_cell.membrane_potential() && t_pop.glut_output(99) == t_cell.glut_output()));
+		System.out.println("Population matches a single striatal neuron after 200ms of 1000mA excitatory input: " + (s_pop.membrane_potential(99) == s_cell.membrane_potential() && s_pop.glut_output(99) == s_cell.glut_output()));
+		System.out.println("Population matches a single globus pallidus neuron after 200ms of 1000mA excitatory input: " + (gp_pop.membrane_potential(99) == gp_cell.membrane_potential() && gp_pop.glut_output(99) == gp_cell.glut_output()));
+		System.out.println("Number of spikes by a globus pallidus neuron of a population after 200ms of no input: " + gp_pop.node(0).count_spikes_since(0));
+		//Pyramidal neurons are noisy and a population draws its noise differently from a single node, so only the spike counts are comparable
+		System.out.println("Number of spikes by a pyramidal neuron of a population and by a single pyramidal neuron after 200ms of 1000mA excitatory input: "
+				+ p_pop.spike_history(99).size() + " and " + p_cell.count_spikes_since(0));
+		
+		//Requesting views of a population does not take seeds from the shared seed source
+		Spiking_Node.set_seed(5L);
+		Spiking_Pyramidal_Node n_1 = new Spiking_Pyramidal_Node();
+		Spiking_Node.set_seed(5L);
+		p_pop.nodes();
+		Spiking_Pyramidal_Node n_2 = new Spiking_Pyramidal_Node();
+		for(int i = 0; i < 200; i++){
+			n_1.step();
+			n_2.step();
+		}
+		System.out.println("Views of a population leave the noise seeds of later nodes unchanged: " + (n_1.membrane_potential_value() == n_2.membrane_potential_value()));
+		return;
+	}
+	
+	/**
+	 * Checks that a steady-state time step of nodes and connections does not allocate. The network is stepped long enough for the JIT to compile the hot path before measuring.
+	 */
+	private static void allocation_test(){
+		com.sun.management.ThreadMXBean mx_bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long thread_id = Thread.currentThread().getId();
+		
+		Node n_cell = new Node();
+		Spiking_Striatal_Node s_cell_1 = new Spiking_Striatal_Node();
+		Spiking_Striatal_Node s_cell_2 = new Spiking_Striatal_Node();
+		Synaptic_Connection s_conn = new Synaptic_Connection(s_cell_1, s_cell_2, 50.0);
+		Synaptic_Connection n_conn = new Synaptic_Connection(n_cell, s_cell_1, 1.0);
+		Presynaptic_Connection p_conn = new Presynaptic_Connection(n_cell, s_conn, -0.8);
+		
+		long allocated = 0;
+		for(int trial = 0; trial < 3; trial++){
+			//The first trials only warm up the JIT compiler
+			long before = mx_bean.getThreadAllocatedBytes(thread_id);
+			for(int i = 0; i < 100000; i++){
+				n_cell.set_input_to(10.0);
+				n_cell.step();
+				s_cell_1.step();
+				s_cell_2.step();
+				p_conn.send();
+				n_conn.send();
+				s_conn.send();
+			}
+			allocated = mx_bean.getThreadAllocatedBytes(thread_id) - before;
+		}
+		System.out.println("Bytes allocated by 100000 steady-state steps of two nodes and three connections: " + allocated);
+		return;
+	}
+	
+	private static void recursive_output_test(){
+		Spiking_GP_Node table_cell = new Spiking_GP_Node();
+		Spiking_GP_Node recursive_cell = new Spiking_GP_Node();
+		recursive_cell.set_recursive_output(true);
+		
+		double max_diff = 0.0;
+		for(int i = 0; i < 2000; i++){
+			if(i < 1000){
+				table_cell.set_input_to(1000.0);
+				recursive_cell.set_input_to(1000.0);
+			}
+			table_cell.step();
+			recursive_cell.step();
+			max_diff = Math.max(max_diff, Math.abs(table_cell.glut_output_value() - recursive_cell.glut_output_value()));
+			max_diff = Math.max(max_diff, Math.abs(table_cell.gaba_output_value() - recursive_cell.gaba_output_value()));
+		}
+		System.out.println("Largest difference between table and recursive output of a globus pallidus neuron over 2000ms: " + max_diff);
+		System.out.println("Recursive output within tolerance: " + (max_diff <= Spiking_Node._recursive_output_tolerance));
+		return;
+	}
+	
+	private static void network_test(){
+		Spiking_Pyramidal_Node p_cell_1 = new Spiking_Pyramidal_Node();
+		Spiking_Pyramidal_Node p_cell_2 = new Spiking_Pyramidal_Node();
+		Spiking_Pyramidal_Node p_cell_3 = new Spiking_Pyramidal_Node();
+		Synaptic_Connection s_conn = new Synaptic_Connection(p_cell_2, p_cell_1, 50.0);
+		Presynaptic_Connection p_conn = new Presynaptic_Connection(p_cell_3, s_conn, -0.8);
+		
+		//The order connections are added in does not matter as presynaptic input is always delivered first
+		Network network = new Network();
+		network.add_connection(s_conn);
+		network.add_connection(p_conn);
+		for(int i = 0; i < 200; i++){
+			p_cell_2.set_input_to(1000.0);
+			p_cell_3.set_input_to(1000.0);
+			network.step();
+		}
+		System.out.println("Number of spikes by a pyramidal neuron in a network after 200ms of excitatory input from an active neuron presynaptically inhibited by another active cell: " + p_cell_1.count_spikes_since(0));
+		
+		network.reset_network();
+		network.run(200);
+		System.out.println("Number of spikes by a pyramidal neuron in a network after 200ms of no input: " + p_cell_1.count_spikes_since(0));
+		return;
+	}
+	
+	/**
+	 * Steps the same network with different numbers of worker threads, reporting the time taken and whether the results are bit-identical to the single threaded run.
+	 */
+	private static void parallel_test(){
+		int[] worker_counts = {1, 2, 4, 8};
+		double[] reference = null;
+		long reference_time = 0;
+		for(int workers : worker_counts){
+			Random rng = new Random(42);
+			Spiking_Node[] cells = new Spiking_Node[2000];
+			for(int i = 0; i < cells.length; i++){
+				cells[i] = (i % 2 == 0) ? new Spiking_GP_Node() : new Spiking_Striatal_Node();
+			}
+			Network network = new Network();
+			network.add_nodes(cells);
+			for(Spiking_Node s : cells){
+				for(Spiking_Node r : cells){
+					if(rng.nextDouble() < 0.02){
+						network.add_connection(new Synaptic_Connection(s, r, rng.nextGaussian() * 5.0));
+					}
+				}
+			}
+			network.set_parallelism(workers);
+			
+			long start = System.nanoTime();
+			for(int t = 0; t < 500; t++){
+				for(int i = 0; i < cells.length; i += 2){
+					cells[i].set_input_to(1000.0);
+				}
+				network.step();
+			}
+			long time = System.nanoTime() - start;
+			network.set_parallelism(1);
+			
+			double[] result = new double[cells.length];
+			for(int i = 0; i < cells.length; i++){
+				result[i] = cells[i].membrane_potential_value();
+			}
+			if(reference == null){
+				reference = result;
+				reference_time = time;
+			}
+			System.out.println("Workers: " + workers + ", time for 500ms of a 2000 neuron network: " + (time / 1000000) + "ms, speedup: " + ((double)reference_time / time) + ", bit-identical to 1 worker: " + Arrays.equals(reference, result));
+		}
+		return;
+	}
+	
+	/**
+	 * Runs the same connectivity as individual Synaptic_Connections, as a Projection and as a Projection delivered in parallel, and checks the results match.
+	 */
+	private static void projection_test(){
+		double[][] results = new double[3][];
+		for(int mode = 0; mode < 3; mode++){
+			Random rng = new Random(7);
+			Spiking_Population gp_pop = Spiking_Population.gp(200);
+			Spiking_Population s_pop = Spiking_Population.striatal(200);
+			Network network = new Network();
+			ArrayList<Integer> sources = new ArrayList<Integer>();
+			ArrayList<Integer> targets = new ArrayList<Integer>();
+			ArrayList<Double> weights = new ArrayList<Double>();
+			for(int i = 0; i < 200; i++){
+				for(int j = 0; j < 200; j++){
+					if(rng.nextDouble() < 0.1){
+						double weight = rng.nextGaussian() * 20.0;
+						if(mode == 0){
+							network.add_connection(new Synaptic_Connection(gp_pop.node(i), s_pop.node(j), weight));
+						}
+						sources.add(i);
+						targets.add(j);
+						weights.add(weight);
+					}
+				}
+			}
+			if(mode > 0){
+				network.add_projection(new Projection(gp_pop, s_pop, sources.stream().mapToInt(x -> x).toArray(), targets.stream().mapToInt(x -> x).toArray(), weights.stream().mapToDouble(x -> x).toArray()));
+			}
+			network.set_parallelism(mode == 2 ? 4 : 1);
+			for(int t = 0; t < 500; t++){
+				for(int i = 0; i < 200; i++){
+					gp_pop.set_input_to(i, 500.0 + i * 5.0);
+				}
+				network.step();
+			}
+			network.set_parallelism(1);
+			results[mode] = new double[200];
+			for(int j = 0; j < 200; j++){
+				results[mode][j] = s_pop.membrane_potential(j);
+			}
+		}
+		System.out.println("Projection matches individual synaptic connections: " + Arrays.equals(results[0], results[1]));
+		System.out.println("Parallel projection delivery matches single threaded delivery: " + Arrays.equals(results[1], results[2]));
+		return;
+	}
+	
+	private static void connectivity_test(){
+		Spiking_Population src = Spiking_Population.striatal(20000);
+		Spiking_Population tgt = Spiking_Population.gp(20000);
+		long start = System.nanoTime();
+		Projection p_1 = Projection.random(src, tgt, 10.0, 2.0, 0.01, 1234L);
+		long time = System.nanoTime() - start;
+		Projection p_2 = Projection.random(src, tgt, 10.0, 2.0, 0.01, 1234L);
+		
+		boolean same = p_1.synapse_count() == p_2.synapse_count();
+		for(int k = 0; same && k < p_1.synapse_count(); k++){
+			same = p_1.target_of(k) == p_2.target_of(k) && p_1.get_weight(k) == p_2.get_weight(k);
+		}
+		System.out.println("Synapses created for a 20000x20000 projection at 1% density: " + p_1.synapse_count() + " (expected about 4000000) in " + (time / 1000000) + "ms");
+		System.out.println("Projection is reproducible from its seed: " + same);
+		
+		Spiking_Pyramidal_Node[] cells = {new Spiking_Pyramidal_Node(), new Spiking_Pyramidal_Node(), new Spiking_Pyramidal_Node()};
+		Synaptic_Connection[] cons = Synaptic_Connection.connect(cells, cells, 50.0, 5.0, 0.5, 99L);
+		Presynaptic_Connection[] p_cons = Presynaptic_Connection.connect(cells, cons, -0.8, 0.1, 0.5, 99L);
+		System.out.println("Connections created between 3 pyramidal neurons at 50% density: " + cons.length + ", presynaptic connections onto them: " + p_cons.length);
+		return;
+	}
+	
+	/**
+	 * Compares dense and event driven delivery in a network where most of the neurons are silent.
+	 */
+	private static void event_driven_test(){
+		double[][] results = new double[3][];
+		long[] times = new long[3];
+		for(int mode = 0; mode < 3; mode++){
+			Spiking_Population s_pop = Spiking_Population.striatal(20000);
+			Spiking_Population gp_pop = Spiking_Population.gp(2000);
+			Network network = new Network();
+			network.add_projection(Projection.random(s_pop, gp_pop, -5.0, 1.0, 0.05, 5L));
+			network.add_projection(Projection.random(s_pop, s_pop, -2.0, 0.5, 0.005, 6L));
+			network.set_event_driven(mode > 0);
+			network.set_parallelism(mode == 2 ? 4 : 1);
+			long start = System.nanoTime();
+			for(int t = 0; t < 200; t++){
+				//Only 5% of the striatal neurons are driven
+				for(int i = 0; i < 1000; i++){
+					s_pop.set_input_to(i, 1000.0);
+				}
+				network.step();
+			}
+			times[mode] = System.nanoTime() - start;
+			network.set_parallelism(1);
+			results[mode] = new double[gp_pop.size()];
+			for(int j = 0; j < gp_pop.size(); j++){
+				results[mode][j] = gp_pop.membrane_potential(j);
+			}
+		}
+		System.out.println("Time for 200ms of a mostly silent 22000 neuron network, dense: " + (times[0] / 1000000) + "ms, event driven: " + (times[1] / 1000000) + "ms");
+		System.out.println("Event driven delivery matches dense delivery: " + Arrays.equals(results[0], results[1]) + ", parallel event driven delivery matches: " + Arrays.equals(results[1], results[2]));
+		return;
+	}
+	
+	private static void dispatcher_test(){
+		Spiking_Pyramidal_Node p_cell_1 = new Spiking_Pyramidal_Node();
+		Spiking_Pyramidal_Node p_cell_2 = new Spiking_Pyramidal_Node();
+		Spiking_Pyramidal_Node p_cell_3 = new Spiking_Pyramidal_Node();
+		Spiking_Pyramidal_Node p_cell_4 = new Spiking_Pyramidal_Node();
+		Synaptic_Connection s_conn = new Synaptic_Connection(p_cell_2, p_cell_1, 50.0);
+		Presynaptic_Connection p_conn_1 = new Presynaptic_Connection(p_cell_3, s_conn, -0.8);
+		Presynaptic_Connection p_conn_2 = new Presynaptic_Connection(p_cell_4, p_conn_1, -0.5); //Presynaptic inhibition of the presynaptic inhibition
+		
+		//The connections are listed in the wrong order on purpose
+		Presynaptic_Dispatcher dispatcher = new Presynaptic_Dispatcher(new Presynaptic_Connection[]{p_conn_1, p_conn_2});
+		System.out.println("Levels in a chain of two presynaptic connections: " + dispatcher.level_count() + ", first level sent: " + (dispatcher.get_level(0)[0] == p_conn_2));
+		
+		Network network = new Network();
+		network.add_connection(s_conn);
+		network.add_connection(p_conn_1);
+		network.add_connection(p_conn_2);
+		for(int i = 0; i < 200; i++){
+			p_cell_2.set_input_to(1000.0);
+			p_cell_3.set_input_to(1000.0);
+			p_cell_4.set_input_to(1000.0);
+			network.step();
+		}
+		System.out.println("Number of spikes by a pyramidal neuron after 200ms of excitatory input from an active neuron whose presynaptic inhibition is itself inhibited: " + p_cell_1.count_spikes_since(0));
+		return;
+	}
+	
+	/**
+	 * Compares the SIMD kernel with the per neuron loop. The population size is not a multiple of the vector length so the scalar tail is used too.
+	 * Run with --add-modules jdk.incubator.vector to use the SIMD kernel.
+	 */
+	private static void vector_test(){
+		Spiking_Population t_vec = Spiking_Population.thalamic(1003);
+		Spiking_Population t_pop = Spiking_Population.thalamic(1003);
+		Spiking_Population s_vec = Spiking_Population.striatal(1003);
+		Spiking_Population s_pop = Spiking_Population.striatal(1003);
+		System.out.println("SIMD kernel available: " + (t_vec.set_vectorized(true) & s_vec.set_vectorized(true)));
+		
+		for(int t = 0; t < 200; t++){
+			for(int i = 0; i < 1003; i++){
+				//A mix of excitatory and inhibitory input so the thalamic neurons use both of their modes
+				double in = (i % 3 == 0) ? -5.0 * (i % 50) : 2.0 * i;
+				t_vec.set_input_to(i, in);
+				t_pop.set_input_to(i, in);
+				s_vec.set_input_to(i, in);
+				s_pop.set_input_to(i, in);
+			}
+			t_vec.step_all();
+			t_pop.step_all();
+			s_vec.step_all();
+			s_pop.step_all();
+		}
+		
+		boolean t_match = true;
+		boolean s_match = true;
+		for(int i = 0; i < 1003; i++){
+			t_match &= t_vec.membrane_potential(i) == t_pop.membrane_potential(i) && t_vec.u(i) == t_pop.u(i) && t_vec.glut_output(i) == t_pop.glut_output(i);
+			s_match &= s_vec.membrane_potential(i) == s_pop.membrane_potential(i) && s_vec.u(i) == s_pop.u(i) && s_vec.gaba_output(i) == s_pop.gaba_output(i);
+		}
+		System.out.println("Vectorized thalamic population matches the per neuron loop after 200ms of mixed input: " + t_match);
+		System.out.println("Vectorized striatal population matches the per neuron loop after 200ms of mixed input: " + s_match);
+		System.out.println("Number of spikes by thalamic neuron 1001 of the vectorized population: " + t_vec.node(1001).count_spikes_since(0));
+		return;
+	}
+	
+	/**
+	 * Checks that noisy neurons are reproducible from their seeds however the work is split.
+	 */
+	private static void noise_test(){
+		Spiking_Population p_pop_1 = Spiking_Population.pyramidal(1000);
+		Spiking_Population p_pop_2 = Spiking_Population.pyramidal(1000);
+		p_pop_1.set_noise_seed(99L);
+		p_pop_2.set_noise_seed(99L);
+		p_pop_2.set_vectorized(true);
+		for(int t = 0; t < 200; t++){
+			p_pop_1.step_all();
+			//The second population is integrated backwards in ranges, as the workers of a parallel network might
+			p_pop_2.advance_clock();
+			for(int from = 900; from >= 0; from -= 100){
+				p_pop_2.integrate(from, from + 100);
+			}
+		}
+		boolean match = true;
+		int spikes = 0;
+		for(int i = 0; i < 1000; i++){
+			match &= p_pop_1.membrane_potential(i) == p_pop_2.membrane_potential(i);
+			spikes += p_pop_1.node(i).count_spikes_since(0);
+		}
+		System.out.println("Noisy pyramidal populations with the same seed match when integrated in a different order: " + match + ", spikes from noise alone: " + spikes);
+		
+		Spiking_Node.set_seed(5L);
+		Spiking_Pyramidal_Node p_cell_1 = new Spiking_Pyramidal_Node();
+		Spiking_Node.set_seed(5L);
+		Spiking_Pyramidal_Node p_cell_2 = new Spiking_Pyramidal_Node();
+		for(int i = 0; i < 200; i++){
+			p_cell_1.step();
+			p_cell_2.step();
+		}
+		System.out.println("Pyramidal neurons created after the same seed match: " + (p_cell_1.membrane_potential().equals(p_cell_2.membrane_potential())));
+		return;
+	}
+	
+	/**
+	 * Runs trials of a small noisy network on replicas and checks them against running the same trials on the original network one after another.
+	 */
+	private static void trial_runner_test(){
+		Spiking_Pyramidal_Node p_cell_1 = new Spiking_Pyramidal_Node();
+		Spiking_Pyramidal_Node p_cell_2 = new Spiking_Pyramidal_Node();
+		Spiking_Pyramidal_Node p_cell_3 = new Spiking_Pyramidal_Node();
+		Spiking_Population s_pop = Spiking_Population.striatal(500);
+		Spiking_Population gp_pop = Spiking_Population.gp(200);
+		Synaptic_Connection s_conn = new Synaptic_Connection(p_cell_2, p_cell_1, 50.0);
+		Network network = new Network();
+		network.add_connection(s_conn);
+		network.add_connection(new Presynaptic_Connection(p_cell_3, s_conn, -0.8));
+		network.add_connection(new Synaptic_Connection(p_cell_1, s_pop.node(0), 400.0));
+		network.add_projection(Projection.random(s_pop, gp_pop, 5.0, 1.0, 0.05, 11L));
+		
+		//The result of trial t is the number of spikes of the GP population plus 1000 times the spikes of p_cell_1, under input that grows with t
+		Trial_Runner.Trial<Integer> trial = (n, t) -> {
+			Spiking_Node input = (Spiking_Node)n.get_nodes().get(0);
+			Spiking_Population striatal = n.get_populations().get(0);
+			Spiking_Population gp = n.get_populations().get(1);
+			int spikes = 0;
+			for(int i = 0; i < 200; i++){
+				input.set_input_to(25.0 * t);
+				for(int j = 0; j < striatal.size(); j++){
+					striatal.raise_input_by(j, 10.0 * t);
+				}
+				n.step();
+				for(int j = 0; j < gp.size(); j++){
+					spikes += gp.did_spike(j) ? 1 : 0;
+				}
+			}
+			return spikes + 1000 * ((Spiking_Node)n.get_nodes().get(1)).count_spikes_since(0);
+		};
+		Trial_Runner<Integer> runner = new Trial_Runner<Integer>(network, 4, 2024L);
+		long start = System.currentTimeMillis();
+		List<Integer> results = runner.run(40, trial);
+		long time = System.currentTimeMillis() - start;
+		
+		boolean match = true;
+		for(int t = 0; t < 40; t++){
+			network.reset_network();
+			network.set_noise_seed(runner.trial_seed(t));
+			match &= trial.run(network, t).equals(results.get(t));
+		}
+		System.out.println("40 trials on 4 replicas in " + time + "ms match the same trials run one after another: " + match + ", first and last result: " + results.get(0) + ", " + results.get(39));
+		Network replica = network.replicate();
+		s_conn.set_weight(60.0);
+		System.out.println("Replicas share the weights of the network: " + (replica.get_synaptic_connections().get(0).get_weight_value() == 60.0));
+		return;
+	}
+	
+	/**
+	 * Warms a network up, saves it, and checks that continuing from the restored snapshot matches continuing from the original state.
+	 */
+	private static void snapshot_test(){
+		Spiking_Striatal_Node s_cell = new Spiking_Striatal_Node();
+		Spiking_GP_Node gp_cell = new Spiking_GP_Node();
+		Spiking_Population s_pop = Spiking_Population.striatal(2000);
+		Spiking_Population gp_pop = Spiking_Population.gp(1000);
+		gp_pop.set_recursive_output(true);
+		Synaptic_Connection s_conn = new Synaptic_Connection(s_cell, gp_cell, -20.0);
+		Network network = new Network();
+		network.add_connection(s_conn);
+		network.add_connection(new Presynaptic_Connection(gp_cell, s_conn, 0.5));
+		network.add_connection(new Synaptic_Connection(gp_cell, s_pop.node(0), 300.0));
+		network.add_projection(Projection.random(s_pop, gp_pop, 5.0, 1.0, 0.05, 3L));
+		network.set_event_driven(true);
+		
+		try{
+			Path file = Files.createTempFile("snapshot", ".bin");
+			for(int i = 0; i < 300; i++){
+				s_cell.set_input_to(800.0);
+				for(int j = 0; j < 2000; j += 7){
+					s_pop.set_input_to(j, 600.0);
+				}
+				network.step();
+			}
+			Network_Snapshot.save(network, file);
+			Network replica = network.replicate();
+			double[] first = continue_run(network);
+			Network_Snapshot.restore(network, file);
+			double[] second = continue_run(network);
+			Network_Snapshot.restore(replica, file);
+			double[] third = continue_run(replica);
+			System.out.println("Continuing from a restored snapshot matches continuing from the saved state: " + (Arrays.equals(first, second) && Arrays.equals(first, third)) + ", spikes after the snapshot: " + first[first.length - 1]);
+			
+			//A plastic network keeps learning the same way after a restore, as the traces of its rules are part of the snapshot
+			Spiking_Population pre = Spiking_Population.striatal(300);
+			Spiking_Population post = Spiking_Population.striatal(300);
+			Projection plastic = Projection.random(pre, post, 20.0, 4.0, 0.1, 5L);
+			STDP_Plasticity stdp = new STDP_Plasticity(plastic, 0.05, 20.0, 0.06, 20.0, 0.0, 100.0);
+			Network plastic_network = new Network();
+			plastic_network.add_projection(plastic);
+			plastic_network.add_plasticity(stdp);
+			double[][] weights = new double[2][];
+			for(int run = -1; run < 2; run++){
+				if(run == 1){
+					Network_Snapshot.restore(plastic_network, file);
+				}
+				for(int i = 0; i < 200; i++){
+					for(int j = 0; j < 300; j += 3){
+						pre.set_input_to(j, (i % 40 < 20) ? 900.0 : 0.0);
+					}
+					plastic_network.step();
+				}
+				if(run == -1){
+					Network_Snapshot.save(plastic_network, file);
+				}
+				else{
+					weights[run] = new double[plastic.synapse_count()];
+					for(int k = 0; k < weights[run].length; k++){
+						weights[run][k] = plastic.get_weight(k);
+					}
+				}
+			}
+			System.out.println("Plasticity continues identically from a restored snapshot: " + Arrays.equals(weights[0], weights[1]));
+			
+			Spiking_Population big = Spiking_Population.pyramidal(2000000);
+			Network big_network = new Network();
+			big_network.add_population(big);
+			for(int i = 0; i < 5; i++){
+				big_network.step();
+			}
+			Network_Snapshot.save(big_network, file);
+			long start = System.currentTimeMillis();
+			Network_Snapshot.restore(big_network, file);
+			System.out.println("Time to restore a 2000000 neuron population from " + (Files.size(file) >> 20) + "MB: " + (System.currentTimeMillis() - start) + "ms");
+			Files.delete(file);
+		}
+		catch(IOException e){
+			e.printStackTrace();
+		}
+		return;
+	}
+	
+	/**
+	 * Runs the network of snapshot_test() for 200ms more and returns the final membrane potentials followed by the number of spikes.
+	 */
+	private static double[] continue_run(Network network){
+		Spiking_Node s_cell = (Spiking_Node)network.get_nodes().get(0);
+		Spiking_Population s_pop = network.get_populations().get(0);
+		Spiking_Population gp_pop = network.get_populations().get(1);
+		double spikes = 0;
+		for(int i = 0; i < 200; i++){
+			s_cell.set_input_to(800.0);
+			for(int j = 3; j < 2000; j += 7){
+				s_pop.set_input_to(j, 700.0);
+			}
+			network.step();
+			for(int j = 0; j < gp_pop.size(); j++){
+				spikes += gp_pop.did_spike(j) ? 1 : 0;
+			}
+		}
+		double[] out = new double[s_pop.size() + gp_pop.size() + 3];
+		for(int j = 0; j < s_pop.size(); j++){
+			out[j] = s_pop.membrane_potential(j);
+		}
+		for(int j = 0; j < gp_pop.size(); j++){
+			out[s_pop.size() + j] = gp_pop.gaba_output(j);
+		}
+		out[out.length - 3] = s_cell.membrane_potential_value();
+		out[out.length - 2] = ((Spiking_Node)network.get_nodes().get(1)).count_spikes_since(0);
+		out[out.length - 1] = spikes;
+		return out;
+	}
+	
+	/**
+	 * Records the spikes of a network integrated by several workers to a file and checks the file against the spikes seen while the network ran.
+	 */
+	private static void recorder_test(){
+		Spiking_Pyramidal_Node p_cell = new Spiking_Pyramidal_Node();
+		Spiking_Population s_pop = Spiking_Population.striatal(100000);
+		Network network = new Network();
+		network.add_node(p_cell);
+		network.add_population(s_pop);
+		network.set_parallelism(4); //the spike list of the population is then out of order
+		try{
+			Path file = Files.createTempFile("raster", ".spk");
+			Spike_Recorder recorder = new Spike_Recorder(file);
+			recorder.add_network(network);
+			ArrayList<long[]> expected = new ArrayList<long[]>();
+			long start = System.currentTimeMillis();
+			for(int t = 1; t <= 500; t++){
+				p_cell.set_input_to(1000.0);
+				for(int i = 0; i < s_pop.size(); i++){
+					s_pop.set_input_to(i, 800.0 + (i % 400));
+				}
+				network.step();
+				recorder.record(t);
+				if(p_cell.did_spike()){
+					expected.add(new long[]{t, 0});
+				}
+				for(int i = 0; i < s_pop.size(); i++){
+					if(s_pop.did_spike(i)){
+						expected.add(new long[]{t, i + 1});
+					}
+				}
+			}
+			recorder.close();
+			long time = System.currentTimeMillis() - start;
+			
+			boolean match = true;
+			int events = 0;
+			Spike_Raster_Reader reader = new Spike_Raster_Reader(file);
+			while(reader.next()){
+				match &= events < expected.size() && expected.get(events)[0] == reader.time() && expected.get(events)[1] == reader.neuron();
+				events++;
+			}
+			reader.close();
+			match &= events == expected.size();
+			System.out.println("Spikes recorded from 500ms of a 100001 neuron network: " + recorder.event_count() + " in " + (Files.size(file) >> 10) + "KB, in " + time + "ms, read back correctly: " + match);
+			Files.delete(file);
+		}
+		catch(IOException e){
+			e.printStackTrace();
+		}
+		network.set_parallelism(1);
+		return;
+	}
+	
+	/**
+	 * Checks decimating and window probes against polling the same neurons every time step.
+	 */
+	private static void probe_test(){
+		Spiking_Striatal_Node s_cell = new Spiking_Striatal_Node();
+		Spiking_Population gp_pop = Spiking_Population.gp(1000);
+		Network network = new Network();
+		network.add_node(s_cell);
+		network.add_population(gp_pop);
+		State_Probe.Variable[] variables = {State_Probe.Variable.MEMBRANE_POTENTIAL, State_Probe.Variable.GABA_OUTPUT};
+		State_Probe decimating = State_Probe.decimating(variables, 10, 100);
+		decimating.add_node(s_cell);
+		decimating.add_node(gp_pop.node(5));
+		State_Probe window = State_Probe.window(variables, 25, 8);
+		window.add_population(gp_pop);
+		network.add_probe(decimating);
+		network.add_probe(window);
+		
+		ArrayList<Double> polled = new ArrayList<Double>();
+		double min = Double.POSITIVE_INFINITY;
+		double max = Double.NEGATIVE_INFINITY;
+		double sum = 0.0;
+		for(int t = 1; t <= 500; t++){
+			s_cell.set_input_to(1000.0);
+			gp_pop.set_input_to(999, (t % 50) * 20.0);
+			network.step();
+			if(t % 10 == 0){
+				polled.add(s_cell.membrane_potential_value());
+				polled.add(gp_pop.gaba_output(5));
+			}
+			if(t > 475){
+				min = Math.min(min, gp_pop.membrane_potential(999));
+				max = Math.max(max, gp_pop.membrane_potential(999));
+				sum += gp_pop.membrane_potential(999);
+			}
+		}
+		
+		boolean match = decimating.sample_count() == 50;
+		for(int s = 0; s < decimating.sample_count(); s++){
+			match &= decimating.time(s) == 10 * (s + 1) && decimating.value(s, 0) == polled.get(2 * s) && decimating.value(s, 3) == polled.get(2 * s + 1);
+		}
+		int last = window.sample_count() - 1;
+		int channel = 999 * window.variable_count();
+		boolean window_match = window.sample_count() == 8 && window.time(last) == 500 && window.min(last, channel) == min && window.max(last, channel) == max
+				&& Math.abs(window.mean(last, channel) - sum / 25) < 1e-9;
+		System.out.println("Decimating probe matches polling every 10ms: " + match + ", window probe keeps the min/max/mean of the last 8 windows: " + window_match);
+		return;
+	}
+	
+	/**
+	 * Reads the metrics of a network through JMX and counts the flight recorder events of a run.
+	 */
+	private static void instrumentation_test(){
+		Spiking_Population s_pop = Spiking_Population.striatal(5000);
+		Spiking_Population gp_pop = Spiking_Population.gp(5000);
+		Network network = new Network();
+		network.add_projection(Projection.random(s_pop, gp_pop, -5.0, 1.0, 0.01, 9L));
+		network.set_event_driven(true);
+		
+		try{
+			Network_Metrics metrics = network.enable_metrics("instrumentation_test");
+			int spikes = 0;
+			for(int t = 0; t < 200; t++){
+				for(int i = 0; i < 5000; i += 2){
+					s_pop.set_input_to(i, 1000.0);
+				}
+				network.step();
+				for(int i = 0; i < 5000; i++){
+					spikes += (s_pop.did_spike(i) ? 1 : 0) + (gp_pop.did_spike(i) ? 1 : 0);
+				}
+			}
+			javax.management.MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			long ticks = (Long)server.getAttribute(metrics.get_name(), "Ticks");
+			long counted = (Long)server.getAttribute(metrics.get_name(), "Spikes");
+			System.out.println("Ticks and spikes read through JMX match the run: " + (ticks == 200 && counted == spikes) + ", mean tick: " + Math.round(metrics.getMeanTickMicros()) + "us, integration share: "
+					+ Math.round(100.0 * metrics.getIntegrateNanos() / (metrics.getPresynapticNanos() + metrics.getSynapticNanos() + metrics.getIntegrateNanos())) + "%");
+			network.disable_metrics();
+			
+			Path file = Files.createTempFile("network", ".jfr");
+			jdk.jfr.Recording recording = new jdk.jfr.Recording();
+			recording.enable("model.NetworkTick");
+			recording.start();
+			network.run(100);
+			recording.stop();
+			recording.dump(file);
+			recording.close();
+			int events = 0;
+			for(jdk.jfr.consumer.RecordedEvent e : jdk.jfr.consumer.RecordingFile.readAllEvents(file)){
+				if(e.getEventType().getName().equals("model.NetworkTick")){
+					events++;
+				}
+			}
+			Files.delete(file);
+			System.out.println("Flight recorder tick events from 100ms of the network: " + events);
+		}
+		catch(Exception e){
+			e.printStackTrace();
+		}
+		return;
+	}
+	
+	/**
+	 * Compares the trace based plasticity with the weight changes found by pairing every pre and postsynaptic spike of the run.
+	 */
+	private static void stdp_test(){
+		Spiking_Population src = Spiking_Population.pyramidal(200);
+		Spiking_Population tgt = Spiking_Population.pyramidal(200);
+		Projection projection = Projection.random(src, tgt, 30.0, 5.0, 0.1, 21L);
+		STDP_Plasticity stdp = new STDP_Plasticity(projection, 0.01, 20.0, 0.012, 20.0, 0.0, 100.0);
+		stdp.set_deferred(true);
+		Network network = new Network();
+		network.add_projection(projection);
+		network.add_plasticity(stdp);
+		network.set_noise_seed(3L);
+		
+		//The same network run by two workers, event driven and vectorized, lists its spikes in a different order
+		Spiking_Population p_src = Spiking_Population.pyramidal(200);
+		Spiking_Population p_tgt = Spiking_Population.pyramidal(200);
+		Projection p_projection = Projection.random(p_src, p_tgt, 30.0, 5.0, 0.1, 21L);
+		STDP_Plasticity p_stdp = new STDP_Plasticity(p_projection, 0.01, 20.0, 0.012, 20.0, 0.0, 100.0);
+		p_stdp.set_deferred(true);
+		p_src.set_vectorized(true);
+		p_tgt.set_vectorized(true);
+		Network p_network = new Network();
+		p_network.add_projection(p_projection);
+		p_network.add_plasticity(p_stdp);
+		p_network.set_noise_seed(3L);
+		p_network.set_parallelism(2);
+		p_network.set_event_driven(true);
+		
+		ArrayList<ArrayList<Integer>> pre = new ArrayList<ArrayList<Integer>>();
+		ArrayList<ArrayList<Integer>> post = new ArrayList<ArrayList<Integer>>();
+		for(int i = 0; i < 200; i++){
+			pre.add(new ArrayList<Integer>());
+			post.add(new ArrayList<Integer>());
+		}
+		for(int t = 1; t <= 1000; t++){
+			for(int i = 0; i < 200; i += 4){
+				src.set_input_to(i, 400.0);
+				p_src.set_input_to(i, 400.0);
+			}
+			network.step();
+			p_network.step();
+			for(int i = 0; i < 200; i++){
+				if(src.did_spike(i)){
+					pre.get(i).add(t);
+				}
+				if(tgt.did_spike(i)){
+					post.get(i).add(t);
+				}
+			}
+		}
+		
+		p_network.set_parallelism(1);
+		double largest_error = 0.0;
+		double total_change = 0.0;
+		boolean same = true;
+		for(int i = 0; i < 200; i++){
+			for(int k = projection.row_start(i); k < projection.row_start(i + 1); k++){
+				same &= stdp.pending_change(k) == p_stdp.pending_change(k);
+				double expected = 0.0;
+				for(int t_pre : pre.get(i)){
+					for(int t_post : post.get(projection.target_of(k))){
+						if(t_post >= t_pre){
+							expected += 0.01 * Math.exp(-(t_post - t_pre) / 20.0);
+						}
+						else{
+							expected -= 0.012 * Math.exp(-(t_pre - t_post) / 20.0);
+						}
+					}
+				}
+				largest_error = Math.max(largest_error, Math.abs(stdp.pending_change(k) - expected));
+				total_change += Math.abs(expected);
+			}
+		}
+		double before = projection.get_weight(0);
+		double pending = stdp.pending_change(0);
+		stdp.apply_pending();
+		System.out.println("Trace based plasticity matches pairing every spike: " + (largest_error < 1e-9) + " (largest difference " + largest_error + ", total change " + total_change + ")"
+				+ ", pending change applied: " + (projection.get_weight(0) == Math.min(100.0, Math.max(0.0, before + pending))));
+		System.out.println("Plasticity of a parallel event driven run matches the single threaded run: " + same);
+		boolean refused = false;
+		try{
+			network.replicate();
+		}
+		catch(IllegalStateException e){
+			refused = true;
+		}
+		System.out.println("A network with plasticity is not replicated: " + refused);
+		return;
+	}
+	
+	private static void delay_test(){
+		double[][] node_mp = new double[2][];
+		for(int run = 0; run < 2; run++){
+			Spiking_Pyramidal_Node source = new Spiking_Pyramidal_Node();
+			source.set_noise_seed(8L);
+			Spiking_Striatal_Node receiver = new Spiking_Striatal_Node();
+			Synaptic_Connection connection = new Synaptic_Connection(source, receiver, 40.0);
+			connection.set_delay(run == 0 ? 0 : 4);
+			Network network = new Network();
+			network.add_node(source);
+			network.add_node(receiver);
+			network.add_connection(connection);
+			node_mp[run] = new double[300];
+			for(int t = 0; t < 300; t++){
+				source.set_input_to(t < 200 ? 600.0 : 0.0);
+				network.step();
+				node_mp[run][t] = receiver.membrane_potential_value();
+			}
+		}
 		
+		double[][] population_mp = new double[2][];
+		for(int run = 0; run < 2; run++){
+			Spiking_Population src = Spiking_Population.striatal(100);
+			Spiking_Population tgt = Spiking_Population.striatal(100);
+			Projection projection = Projection.random(src, tgt, 60.0, 10.0, 0.2, 4L);
+			projection.set_delay(run == 0 ? 0 : 7);
+			Network network = new Network();
+			network.add_projection(projection);
+			population_mp[run] = delay_run(network, 0, 300);
+		}
+		
+		System.out.println("A connection delay of 4 shifts the response by exactly 4 steps: " + (shifted(node_mp[0], node_mp[1], 4) && !Arrays.equals(node_mp[0], node_mp[1]))
+				+ ", a projection delay of 7 shifts it by exactly 7 steps: " + (shifted(population_mp[0], population_mp[1], 7 * 100) && !Arrays.equals(population_mp[0], population_mp[1])));
+		
+		double[][] mixed = new double[3][];
+		Network[] networks = new Network[2];
+		for(int run = 0; run < 2; run++){
+			Spiking_Population src = Spiking_Population.striatal(100);
+			Spiking_Population tgt = Spiking_Population.striatal(100);
+			Projection projection = Projection.random(src, tgt, 60.0, 10.0, 0.2, 4L);
+			for(int k = 0; k < projection.synapse_count(); k++){
+				projection.set_delay(k, k % 20);
+			}
+			networks[run] = new Network();
+			networks[run].add_projection(projection);
+			networks[run].set_parallelism(run == 0 ? 1 : 4);
+			mixed[run] = delay_run(networks[run], 0, 300);
+		}
+		networks[1].set_parallelism(1);
+		
+		Network network = networks[0];
+		network.reset_network();
+		delay_run(network, 0, 150);
+		try{
+			Path file = Files.createTempFile("delays", ".snn");
+			Network_Snapshot.save(network, file);
+			network.reset_network();
+			Network_Snapshot.restore(network, file);
+			mixed[2] = delay_run(network, 150, 150);
+			Files.delete(file);
+		}
+		catch(IOException e){
+			e.printStackTrace();
+		}
+		System.out.println("Per synapse delays from 0 to 19 steps give the same result in parallel: " + Arrays.equals(mixed[0], mixed[1])
+				+ ", after restoring a snapshot with input in flight: " + Arrays.equals(Arrays.copyOfRange(mixed[0], 150 * 100, 300 * 100), mixed[2])
+				+ ", delay buffer size: " + network.get_populations().get(1).size() * 20 + " values for " + network.get_projections().get(0).synapse_count() + " synapses");
+		return;
+	}
+	
+	/**
+	 * Runs the two population network of delay_test() from time step start for steps time steps and returns the membrane potential of every target neuron at every step.
+	 */
+	private static double[] delay_run(Network network, int start, int steps){
+		Spiking_Population src = network.get_populations().get(0);
+		Spiking_Population tgt = network.get_populations().get(1);
+		double[] mp = new double[steps * tgt.size()];
+		for(int t = 0; t < steps; t++){
+			for(int i = 0; i < src.size(); i += 3){
+				src.set_input_to(i, (start + t < 200) ? 500.0 : 0.0);
+			}
+			network.step();
+			for(int i = 0; i < tgt.size(); i++){
+				mp[t * tgt.size() + i] = tgt.membrane_potential(i);
+			}
+		}
+		return mp;
+	}
+	
+	/**
+	 * @return true if delayed is reference moved later by shift entries, with the entries before the shift left at the resting value of the first entry.
+	 */
+	private static boolean shifted(double[] reference, double[] delayed, int shift){
+		for(int i = 0; i < shift; i++){
+			if(delayed[i] != reference[0]){
+				return false;
+			}
+		}
+		for(int i = shift; i < delayed.length; i++){
+			if(delayed[i] != reference[i - shift]){
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private static void fast_forward_test(){
+		double[][] results = new double[4][];
+		long[] times = new long[4];
+		int[] idle_steps = new int[4];
+		for(int run = 0; run < 4; run++){
+			Spiking_Population thalamic = Spiking_Population.thalamic(200);
+			Spiking_Population striatal = Spiking_Population.striatal(20000);
+			Spiking_Population gp = Spiking_Population.gp(20000);
+			Projection projection = Projection.random(thalamic, striatal, 40.0, 5.0, 0.005, 12L);
+			projection.set_delay(3);
+			Spiking_Striatal_Node cell = new Spiking_Striatal_Node();
+			Network network = new Network();
+			network.add_projection(projection);
+			network.add_population(gp);
+			network.add_node(cell);
+			network.add_connection(new Synaptic_Connection(thalamic.node(0), cell, 400.0));
+			boolean vectorized = run >= 2;
+			thalamic.set_vectorized(vectorized);
+			striatal.set_vectorized(vectorized);
+			gp.set_vectorized(vectorized);
+			network.set_fast_forward(run % 2 == 1);
+			
+			long start = System.nanoTime();
+			for(int t = 0; t < 1000; t++){
+				if(t < 100 || (t >= 500 && t < 550)){
+					for(int i = 0; i < 200; i += 5){
+						thalamic.set_input_to(i, 300.0);
+					}
+				}
+				network.step();
+				if(gp.is_idle()){
+					idle_steps[run]++;
+				}
+			}
+			times[run] = System.nanoTime() - start;
+			
+			double[] state = new double[2 * striatal.size() + 4];
+			for(int i = 0; i < striatal.size(); i++){
+				state[2 * i] = striatal.membrane_potential(i);
+				state[2 * i + 1] = striatal.u(i);
+			}
+			state[state.length - 4] = cell.membrane_potential_value();
+			state[state.length - 3] = cell.count_spikes_since(0);
+			state[state.length - 2] = thalamic.membrane_potential(0);
+			state[state.length - 1] = striatal.quiet_count();
+			results[run] = state;
+		}
+		boolean same = Arrays.equals(Arrays.copyOf(results[0], results[0].length - 1), Arrays.copyOf(results[1], results[1].length - 1))
+				&& Arrays.equals(Arrays.copyOf(results[2], results[2].length - 1), Arrays.copyOf(results[3], results[3].length - 1))
+				&& Arrays.equals(Arrays.copyOf(results[0], results[0].length - 1), Arrays.copyOf(results[2], results[2].length - 1));
+		System.out.println("Fast-forward of quiet neurons gives identical results: " + same + ", node spikes: " + results[1][results[1].length - 3]
+				+ ", quiet striatal neurons at the end: " + (int)results[1][results[1].length - 1] + " of 20000, idle steps of the unused population: " + idle_steps[1] + " of 1000");
+		System.out.println("Time for 1000 steps without and with fast-forward: " + times[0] / 1000000 + "ms and " + times[1] / 1000000 + "ms, vectorized: " + times[2] / 1000000 + "ms and " + times[3] / 1000000 + "ms");
+		return;
+	}
+	
+	private static void neuron_type_test(){
+		try{
+			List<Neuron_Type> loaded = Neuron_Type.load(Paths.get("neuron_types.properties"));
+			System.out.println("Neuron types loaded from neuron_types.properties: " + loaded + ", registered types: " + Neuron_Type.names());
+		}
+		catch(IOException e){
+			System.out.println("neuron_types.properties was not found in " + Paths.get("").toAbsolutePath() + ", only the built in types are registered: " + Neuron_Type.names());
+		}
+		
+		//the old subclasses, a node made directly from the registered type and a population of the type all follow the same equations
+		boolean same = true;
+		for(String name : Neuron_Type.names()){
+			Neuron_Type type = Neuron_Type.get(name);
+			if(type.noise_stdv() != 0.0){
+				continue;
+			}
+			Spiking_Node node = new Spiking_Node(type);
+			Spiking_Population population = Spiking_Population.of(type, 1);
+			Spiking_Node subclass = name.equals("striatal") ? new Spiking_Striatal_Node() : name.equals("gp") ? new Spiking_GP_Node() : name.equals("thalamic") ? new Spiking_Thalamic_Node() : null;
+			for(int t = 0; t < 500; t++){
+				double input = (t % 200 < 100) ? 600.0 : 0.0;
+				node.set_input_to(input);
+				population.set_input_to(0, input);
+				node.step();
+				population.step_all();
+				same = same && node.membrane_potential_value() == population.membrane_potential(0) && node.did_spike() == population.did_spike(0);
+				if(subclass != null){
+					subclass.set_input_to(input);
+					subclass.step();
+					same = same && subclass.membrane_potential_value() == node.membrane_potential_value();
+				}
+			}
+		}
+		
+		StringBuilder spikes = new StringBuilder();
+		Network network = new Network();
+		ArrayList<Spiking_Node> cells = new ArrayList<Spiking_Node>();
+		for(String name : Neuron_Type.names()){
+			Spiking_Node cell = new Spiking_Node(Neuron_Type.get(name));
+			cells.add(cell);
+			network.add_node(cell);
+		}
+		for(int t = 0; t < 1000; t++){
+			for(Spiking_Node cell : cells){
+				cell.set_input_to(cell.type().C() * 10.0);
+			}
+			network.step();
+		}
+		for(Spiking_Node cell : cells){
+			spikes.append(cell.type().name()).append(": ").append(cell.count_spikes_since(0)).append(" ");
+		}
+		System.out.println("Nodes made from a type, populations of the type and the original subclasses match: " + same + ", spikes in one second of input: " + spikes.toString().trim());
+		
+		//A subclass that overrides step() is still stepped through it by a network
+		final int[] calls = new int[1];
+		Spiking_Node custom = new Spiking_Node(Neuron_Type.GP){
+			public void step(){
+				calls[0]++;
+				super.step();
+				return;
+			}
+		};
+		Network custom_network = new Network();
+		custom_network.add_node(custom);
+		custom_network.add_node(new Spiking_Node(Neuron_Type.GP));
+		custom_network.run(10);
+		System.out.println("A network steps a node through an overriding step(): " + (calls[0] == 10));
+		return;
+	}
+	
+	/**
+	 * Checks the single precision population against itself and against the double precision population, see Precision_Validation.
+	 */
+	private static void float_test(){
+		Float_Population f_vec = Float_Population.of(Neuron_Type.THALAMIC, 1003);
+		Float_Population f_pop = Float_Population.of(Neuron_Type.THALAMIC, 1003);
+		Float_Population n_vec = Float_Population.of(Neuron_Type.PYRAMIDAL, 1003);
+		Float_Population n_pop = Float_Population.of(Neuron_Type.PYRAMIDAL, 1003);
+		n_vec.set_noise_seed(7L);
+		n_pop.set_noise_seed(7L);
+		System.out.println("Float SIMD kernel available: " + (f_vec.set_vectorized(true) & n_vec.set_vectorized(true)));
+		for(int t = 0; t < 200; t++){
+			for(int i = 0; i < 1003; i++){
+				double in = (i % 3 == 0) ? -5.0 * (i % 50) : 2.0 * i;
+				f_vec.set_input_to(i, in);
+				f_pop.set_input_to(i, in);
+			}
+			f_vec.step_all();
+			f_pop.step_all();
+			n_vec.step_all();
+			n_pop.step_all();
+		}
+		boolean match = true;
+		for(int i = 0; i < 1003; i++){
+			match &= f_vec.membrane_potential(i) == f_pop.membrane_potential(i) && f_vec.u(i) == f_pop.u(i) && f_vec.glut_output(i) == f_pop.glut_output(i);
+			match &= n_vec.membrane_potential(i) == n_pop.membrane_potential(i) && n_vec.glut_output(i) == n_pop.glut_output(i);
+		}
+		System.out.println("Vectorized float populations match the per neuron loop after 200ms, with and without noise: " + match);
+		
+		//A single noise free neuron follows the double precision neuron until rounding moves a spike across a time step
+		Spiking_Population d_one = Spiking_Population.striatal(1);
+		Float_Population f_one = Float_Population.of(Neuron_Type.STRIATAL, 1);
+		int[] one_spikes = new int[3];
+		for(int t = 0; t < 1000; t++){
+			double input = (t % 200 < 100) ? 600.0 : 0.0;
+			d_one.set_input_to(0, input);
+			f_one.set_input_to(0, input);
+			d_one.step_all();
+			f_one.step_all();
+			one_spikes[0] += d_one.did_spike(0) ? 1 : 0;
+			one_spikes[1] += f_one.did_spike(0) ? 1 : 0;
+			one_spikes[2] += (d_one.did_spike(0) && f_one.did_spike(0)) ? 1 : 0;
+		}
+		System.out.println("Spikes of a striatal neuron in one second, double: " + one_spikes[0] + ", float: " + one_spikes[1] + ", at the same time step: " + one_spikes[2]);
+		
+		//A float network is reproducible from its seed, after a reset, in a replica and with a worker pool
+		Network network = new Network();
+		Spiking_Population d_src = Spiking_Population.pyramidal(500);
+		Float_Population src = Float_Population.of(Neuron_Type.PYRAMIDAL, 500);
+		Float_Population tgt = Float_Population.of(Neuron_Type.STRIATAL, 500);
+		network.add_projection(Float_Projection.of(Projection.random(d_src, Spiking_Population.striatal(500), 20.0, 4.0, 0.1, 3L), src, tgt));
+		Network replica = network.replicate();
+		int[] counts = new int[4];
+		for(int run = 0; run < 4; run++){
+			Network n = (run == 2) ? replica : network;
+			n.set_parallelism(run == 3 ? 4 : 1);
+			Float_Population s = n.get_float_populations().get(0);
+			Float_Population r = n.get_float_populations().get(1);
+			n.reset_network();
+			n.set_noise_seed(11L);
+			for(int t = 0; t < 300; t++){
+				for(int i = 0; i < 500; i++){
+					s.raise_input_by(i, 40.0);
+				}
+				n.step();
+				for(int i = 0; i < 500; i++){
+					counts[run] += r.did_spike(i) ? 1 : 0;
+				}
+			}
+		}
+		network.set_parallelism(1);
+		
+		//The metrics count the spikes and spike histories of float populations
+		Network_Metrics metrics = network.enable_metrics("float_test");
+		Float_Population m_src = network.get_float_populations().get(0);
+		Float_Population m_tgt = network.get_float_populations().get(1);
+		int float_spikes = 0;
+		for(int t = 0; t < 50; t++){
+			for(int i = 0; i < 500; i++){
+				m_src.raise_input_by(i, 40.0);
+			}
+			network.step();
+			for(int i = 0; i < 500; i++){
+				float_spikes += (m_src.did_spike(i) ? 1 : 0) + (m_tgt.did_spike(i) ? 1 : 0);
+			}
+		}
+		boolean metrics_match = metrics.getSpikes() == float_spikes && metrics.getLastTickPopulationSpikes().length == 2 && metrics.getMaxSpikeHistorySize() > 0 && metrics.getDeliveries() > 0;
+		network.disable_metrics();
+		System.out.println("Float network repeats after a reset, in a replica and in parallel: " + (counts[0] == counts[1] && counts[1] == counts[2] && counts[2] == counts[3])
+				+ ", metrics count its spikes: " + metrics_match + ", striatal spikes: " + counts[0]);
+		
+		//A restored float network continues exactly as it did after the snapshot was taken
+		int[] branch = new int[2];
+		try{
+			Path snapshot = Files.createTempFile("float_snapshot", ".bin");
+			Network_Snapshot.save(network, snapshot);
+			for(int run = 0; run < 2; run++){
+				if(run == 1){
+					Network_Snapshot.restore(network, snapshot);
+				}
+				for(int t = 0; t < 100; t++){
+					for(int i = 0; i < 500; i++){
+						m_src.raise_input_by(i, 40.0);
+					}
+					network.step();
+					for(int i = 0; i < 500; i++){
+						branch[run] += m_tgt.did_spike(i) ? 1 : 0;
+					}
+				}
+			}
+			Files.delete(snapshot);
+		}
+		catch(IOException e){
+			branch[1] = -1;
+		}
+		System.out.println("Restored float network repeats the spikes after the snapshot: " + (branch[0] == branch[1] && branch[0] > 0));
+		
+		//Float populations are recorded and probed like the others
+		boolean recorded = false;
+		boolean probed = true;
+		State_Probe probe = State_Probe.decimating(new State_Probe.Variable[]{State_Probe.Variable.MEMBRANE_POTENTIAL}, 1, 1);
+		probe.add_population(m_tgt);
+		network.add_probe(probe);
+		try{
+			Path file = Files.createTempFile("float_raster", ".spk");
+			Spike_Recorder recorder = new Spike_Recorder(file);
+			recorder.add_network(network);
+			int spikes = 0;
+			for(int t = 1; t <= 50; t++){
+				for(int i = 0; i < 500; i++){
+					m_src.raise_input_by(i, 40.0);
+				}
+				network.step();
+				recorder.record(t);
+				for(int i = 0; i < 500; i++){
+					spikes += (m_src.did_spike(i) ? 1 : 0) + (m_tgt.did_spike(i) ? 1 : 0);
+					probed &= probe.value(0, i) == m_tgt.membrane_potential(i);
+				}
+			}
+			recorder.close();
+			recorded = spikes > 0 && recorder.event_count() == spikes;
+			Files.delete(file);
+		}
+		catch(IOException e){
+		}
+		System.out.println("Float populations are recorded: " + recorded + ", probed: " + probed);
+		
+		List<Map<String, Object>> results = Precision_Validation.run(200, 500, 2, 1L);
+		StringBuilder divergence = new StringBuilder();
+		for(Map<String, Object> result : results){
+			divergence.append(result.get("population")).append(": ").append(result.get("rate_divergence")).append(" ");
+		}
+		System.out.println("Relative firing rate divergence of float from double over 500ms: " + divergence.toString().trim());
+		System.out.println("Bytes of neuron state per neuron, double: " + 5 * Double.BYTES + ", float: " + 5 * Float.BYTES);
 		return;
 	}
 }
@@ -0,0 +1,1013 @@
+package model;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * A container for the nodes, populations and connections of a neural network that advances them with a deterministic schedule.
+ * Each time step is run as three explicit phases:
+ * 1. presynaptic input is delivered by every Presynaptic_Connection, senders before their receivers, see Presynaptic_Dispatcher,
+ * 2. synaptic input is delivered by every Synaptic_Connection and then every Projection, in the order they were added,
+ * 3. every node and population is integrated by one step.
+ * As the network knows all the work of a time step it is free to reorder, batch or parallelise the work within a phase without changing the result.
+ * With set_parallelism() each phase is split into tasks that run on a ForkJoinPool, with one barrier at the end of every phase.
+ * Synaptic input is grouped by receiver so that every receiver is written by a single task, adding its inputs in the same order as a single threaded run.
+ * Parallel runs are therefore bit-identical to single threaded runs. Every node and population draws its noise from its own stream, see Spiking_Node.set_seed().
+ * With set_event_driven() synaptic delivery only touches the outgoing synapses of sources whose transmitter output is not zero, see deliver_synaptic().
+ * Connections and projections with an axonal delay write into the Delay_Buffer of their receiver, which takes the input back when it is integrated.
+ * Single precision populations and projections, see Float_Population, run in the same phases, after their double precision counterparts.
+ * @author Scaed
+ *
+ */
+public class Network {
+
+	private final ArrayList<Node> _node_list = new ArrayList<Node>();
+	private final Set<Node> _node_set = Collections.newSetFromMap(new IdentityHashMap<Node, Boolean>()); //the members of _node_list, so adding is O(1)
+	private final ArrayList<Spiking_Population> _population_list = new ArrayList<Spiking_Population>();
+	private final Set<Spiking_Population> _population_set = Collections.newSetFromMap(new IdentityHashMap<Spiking_Population, Boolean>());
+	private final ArrayList<Synaptic_Connection> _synaptic_list = new ArrayList<Synaptic_Connection>();
+	private final ArrayList<Presynaptic_Connection> _presynaptic_list = new ArrayList<Presynaptic_Connection>();
+	private final ArrayList<Projection> _projection_list = new ArrayList<Projection>();
+	private final ArrayList<Float_Population> _float_population_list = new ArrayList<Float_Population>();
+	private final Set<Float_Population> _float_population_set = Collections.newSetFromMap(new IdentityHashMap<Float_Population, Boolean>());
+	private final ArrayList<Float_Projection> _float_projection_list = new ArrayList<Float_Projection>();
+
+	protected Node[] _nodes = new Node[0];
+	private Spiking_Node[] _spiking_nodes = new Spiking_Node[0]; //integrated through the final Spiking_Node.integrate(), see step_nodes()
+	private Node[] _other_nodes = new Node[0];
+	protected Spiking_Population[] _populations = new Spiking_Population[0];
+	protected Synaptic_Connection[] _synaptic = new Synaptic_Connection[0];
+	protected Presynaptic_Connection[] _presynaptic = new Presynaptic_Connection[0];
+	protected Projection[] _projections = new Projection[0];
+	protected Float_Population[] _float_populations = new Float_Population[0];
+	protected Float_Projection[] _float_projections = new Float_Projection[0];
+	protected Presynaptic_Dispatcher _dispatcher = new Presynaptic_Dispatcher(new Presynaptic_Connection[0]);
+	private boolean _changed = false;
+	protected int _t = 0;
+
+	private static final int _min_population_chunk = 1024;
+	//whether a class of node is stepped by Spiking_Node.step() itself, so that it can be integrated directly, see step_nodes()
+	private static final ClassValue<Boolean> _shared_step = new ClassValue<Boolean>(){
+		protected Boolean computeValue(Class<?> c){
+			try{
+				return Spiking_Node.class.isAssignableFrom(c) && c.getMethod("step").getDeclaringClass() == Spiking_Node.class;
+			}
+			catch(NoSuchMethodException e){
+				return false;
+			}
+		}
+	};
+	private ForkJoinPool _pool = null;
+	private int _parallelism = 1;
+	private ArrayList<Callable<Object>> _synaptic_tasks;
+	private ArrayList<Callable<Object>> _projection_tasks;
+	private ArrayList<Callable<Object>> _integrate_tasks;
+
+	private boolean _event_driven = false;
+	private Node[] _group_source; //synaptic connections grouped by source, for event driven delivery
+	private Synaptic_Connection[][] _group_members;
+	private Synaptic_Connection[][] _group_gated; //members that receive presynaptic input and so must be sent every time step
+	private boolean[] _group_send;
+	private boolean[] _group_was_active;
+	private Spiking_Population[] _projection_sources;
+
+	private State_Probe[] _probes = new State_Probe[0];
+	private STDP_Plasticity[] _plasticity = new STDP_Plasticity[0];
+	private Network_Metrics _metrics = null;
+
+	/**
+	 * Adds a node to the network. A view of a neuron of a Spiking_Population cannot be stepped on its own and so its population is added instead.
+	 * @param n
+	 */
+	public void add_node(Node n){
+		if(n instanceof Population_Node){
+			add_population(((Population_Node)n).get_population());
+			return;
+		}
+		if(_node_set.add(n)){
+			_node_list.add(n);
+			_changed = true;
+		}
+		return;
+	}
+
+	public void add_nodes(Node[] nodes){
+		for(Node n : nodes){
+			add_node(n);
+		}
+		return;
+	}
+
+	public void add_population(Spiking_Population p){
+		if(_population_set.add(p)){
+			_population_list.add(p);
+			_changed = true;
+		}
+		return;
+	}
+
+	public void add_population(Float_Population p){
+		if(_float_population_set.add(p)){
+			_float_population_list.add(p);
+			_changed = true;
+		}
+		return;
+	}
+
+	/**
+	 * Adds a connection to the network. The source and receiver of the connection are added as well if they are not already part of the network.
+	 * @param c
+	 */
+	public void add_connection(Synaptic_Connection c){
+		add_node(c.get_source());
+		add_node(c.get_reciever());
+		_synaptic_list.add(c);
+		_changed = true;
+		return;
+	}
+
+	/**
+	 * Adds a presynaptic connection to the network. The source is added as well if it is not already part of the network.
+	 * The receiving connection must be added separately.
+	 * @param c
+	 */
+	public void add_connection(Presynaptic_Connection c){
+		add_node(c.get_source());
+		_presynaptic_list.add(c);
+		_changed = true;
+		return;
+	}
+
+	/**
+	 * Adds a projection to the network. The source and target populations are added as well if they are not already part of the network.
+	 * @param p
+	 */
+	public void add_projection(Projection p){
+		add_population(p.get_source());
+		add_population(p.get_target());
+		_projection_list.add(p);
+		_changed = true;
+		return;
+	}
+
+	/**
+	 * Adds a single precision projection to the network. The source and target populations are added as well if they are not already part of the network.
+	 * @param p
+	 */
+	public void add_projection(Float_Projection p){
+		add_population(p.get_source());
+		add_population(p.get_target());
+		_float_projection_list.add(p);
+		_changed = true;
+		return;
+	}
+
+	public void add_connections(Connection[] connections){
+		for(Connection c : connections){
+			if(c instanceof Synaptic_Connection){
+				add_connection((Synaptic_Connection)c);
+			}
+			else if(c instanceof Presynaptic_Connection){
+				add_connection((Presynaptic_Connection)c);
+			}
+		}
+		return;
+	}
+
+	/**
+	 * Creates an independent copy of the network, used to run trials side by side, see Trial_Runner.
+	 * Every node and population of the replica has its own state and noise stream, but the connectivity and weights are shared with this network:
+	 * connections share their size 1 weight arrays and projections share their synapse arrays, so the memory used does not grow with the weights.
+	 * Changing a weight in one network changes it in every replica. The replica is single threaded and uses the same delivery mode as this network.
+	 * Probes and plasticity rules are not replicated. As a plasticity rule would rewrite the shared weights of every replica while trials run,
+	 * a network with plasticity rules cannot be replicated.
+	 * @return the replica, in its reset state
+	 * @throws IllegalStateException if a plasticity rule has been added to the network
+	 */
+	public Network replicate(){
+		if(_plasticity.length > 0){
+			throw new IllegalStateException("A network with plasticity rules cannot be replicated as its replicas would share the weights the rules change.");
+		}
+		IdentityHashMap<Object, Object> copies = new IdentityHashMap<Object, Object>();
+		Network n = new Network();
+		for(Node node : _node_list){
+			n.add_node(copy_of(node, copies));
+		}
+		for(Spiking_Population p : _population_list){
+			n.add_population(copy_of(p, copies));
+		}
+		for(Synaptic_Connection c : _synaptic_list){
+			n.add_connection((Synaptic_Connection)copy_of(c, copies));
+		}
+		for(Presynaptic_Connection c : _presynaptic_list){
+			n.add_connection((Presynaptic_Connection)copy_of(c, copies));
+		}
+		for(Projection p : _projection_list){
+			n.add_projection(p.replicate(copy_of(p.get_source(), copies), copy_of(p.get_target(), copies)));
+		}
+		for(Float_Population p : _float_population_list){
+			n.add_population(copy_of(p, copies));
+		}
+		for(Float_Projection p : _float_projection_list){
+			n.add_projection(p.replicate(copy_of(p.get_source(), copies), copy_of(p.get_target(), copies)));
+		}
+		n.set_event_driven(_event_driven);
+		return n;
+	}
+
+	private static Node copy_of(Node node, IdentityHashMap<Object, Object> copies){
+		if(node instanceof Population_Node){
+			Population_Node view = (Population_Node)node;
+			return copy_of(view.get_population(), copies).node(view.get_index());
+		}
+		Node copy = (Node)copies.get(node);
+		if(copy == null){
+			copy = node.replicate();
+			copies.put(node, copy);
+		}
+		return copy;
+	}
+
+	private static Spiking_Population copy_of(Spiking_Population p, IdentityHashMap<Object, Object> copies){
+		Spiking_Population copy = (Spiking_Population)copies.get(p);
+		if(copy == null){
+			copy = p.replicate();
+			copies.put(p, copy);
+		}
+		return copy;
+	}
+
+	private static Float_Population copy_of(Float_Population p, IdentityHashMap<Object, Object> copies){
+		Float_Population copy = (Float_Population)copies.get(p);
+		if(copy == null){
+			copy = p.replicate();
+			copies.put(p, copy);
+		}
+		return copy;
+	}
+
+	/**
+	 * The receiver of a presynaptic connection is copied first, as it is needed to construct the copy.
+	 */
+	private static Connection copy_of(Connection c, IdentityHashMap<Object, Object> copies){
+		Connection copy = (Connection)copies.get(c);
+		if(copy != null){
+			return copy;
+		}
+		if(c instanceof Synaptic_Connection){
+			Synaptic_Connection s = (Synaptic_Connection)c;
+			copy = s.replicate(copy_of(s.get_source(), copies), copy_of(s.get_reciever(), copies));
+		}
+		else if(c instanceof Presynaptic_Connection){
+			Presynaptic_Connection p = (Presynaptic_Connection)c;
+			copy = p.replicate(copy_of(p.get_source(), copies), copy_of(p.get_reciever(), copies));
+		}
+		else{
+			throw new UnsupportedOperationException(c.getClass().getSimpleName() + " does not support replication.");
+		}
+		copies.put(c, copy);
+		return copy;
+	}
+
+	/**
+	 * Restarts the noise stream of every spiking node and population of the network from seeds derived from the given one, so that a run can be repeated exactly.
+	 * @param seed
+	 */
+	public void set_noise_seed(long seed){
+		SplittableRandom seeds = new SplittableRandom(seed);
+		for(Node n : _node_list){
+			long s = seeds.nextLong();
+			if(n instanceof Spiking_Node){
+				((Spiking_Node)n).set_noise_seed(s);
+			}
+		}
+		for(Spiking_Population p : _population_list){
+			p.set_noise_seed(seeds.nextLong());
+		}
+		for(Float_Population p : _float_population_list){
+			p.set_noise_seed(seeds.nextLong());
+		}
+		return;
+	}
+
+	/**
+	 * Switches quiescent fast-forward on or off for every spiking node and population in the network, see Spiking_Population.set_fast_forward().
+	 * Noise free neurons that have settled with nothing driving them are then skipped until input reaches them, without changing the result.
+	 * Nodes and populations added later keep their own setting.
+	 * @param fast_forward
+	 */
+	public void set_fast_forward(boolean fast_forward){
+		for(Node n : _node_list){
+			if(n instanceof Spiking_Node){
+				((Spiking_Node)n).set_fast_forward(fast_forward);
+			}
+		}
+		for(Spiking_Population p : _population_list){
+			p.set_fast_forward(fast_forward);
+		}
+		return;
+	}
+
+	/**
+	 * Attaches a probe that samples the network after every time step. See State_Probe.
+	 * @param probe
+	 */
+	public void add_probe(State_Probe probe){
+		_probes = Arrays.copyOf(_probes, _probes.length + 1);
+		_probes[_probes.length - 1] = probe;
+		return;
+	}
+
+	/**
+	 * Adds a plasticity rule that is updated after every time step. Its projection should be part of the network.
+	 * @param rule
+	 */
+	public void add_plasticity(STDP_Plasticity rule){
+		_plasticity = Arrays.copyOf(_plasticity, _plasticity.length + 1);
+		_plasticity[_plasticity.length - 1] = rule;
+		return;
+	}
+
+	public void remove_plasticity(STDP_Plasticity rule){
+		ArrayList<STDP_Plasticity> rules = new ArrayList<STDP_Plasticity>(Arrays.asList(_plasticity));
+		rules.remove(rule);
+		_plasticity = rules.toArray(new STDP_Plasticity[rules.size()]);
+		return;
+	}
+
+	public void remove_probe(State_Probe probe){
+		ArrayList<State_Probe> probes = new ArrayList<State_Probe>(Arrays.asList(_probes));
+		probes.remove(probe);
+		_probes = probes.toArray(new State_Probe[probes.size()]);
+		return;
+	}
+
+	public List<Node> get_nodes(){
+		return Collections.unmodifiableList(_node_list);
+	}
+
+	public List<Spiking_Population> get_populations(){
+		return Collections.unmodifiableList(_population_list);
+	}
+
+	public List<Synaptic_Connection> get_synaptic_connections(){
+		return Collections.unmodifiableList(_synaptic_list);
+	}
+
+	public List<Presynaptic_Connection> get_presynaptic_connections(){
+		return Collections.unmodifiableList(_presynaptic_list);
+	}
+
+	public List<Projection> get_projections(){
+		return Collections.unmodifiableList(_projection_list);
+	}
+
+	public List<Float_Population> get_float_populations(){
+		return Collections.unmodifiableList(_float_population_list);
+	}
+
+	public List<Float_Projection> get_float_projections(){
+		return Collections.unmodifiableList(_float_projection_list);
+	}
+
+	/**
+	 * Sets the number of worker threads used to step the network. With 1 worker, the default, every phase runs in the calling thread.
+	 * @param workers
+	 */
+	public void set_parallelism(int workers){
+		if(_pool != null){
+			_pool.shutdown();
+			_pool = null;
+		}
+		_parallelism = Math.max(workers, 1);
+		if(_parallelism > 1){
+			_pool = new ForkJoinPool(_parallelism);
+		}
+		_changed = true;
+		return;
+	}
+
+	public int get_parallelism(){
+		return _parallelism;
+	}
+
+	/**
+	 * Switches event driven synaptic delivery on or off. See deliver_synaptic().
+	 * @param event_driven
+	 */
+	public void set_event_driven(boolean event_driven){
+		_event_driven = event_driven;
+		_changed = true;
+		return;
+	}
+
+	public boolean is_event_driven(){
+		return _event_driven;
+	}
+
+	/**
+	 * @return whether each source group was active on the last time step in event driven mode, or null. Used by Network_Snapshot.
+	 */
+	boolean[] group_was_active(){
+		return _event_driven ? _group_was_active : null;
+	}
+
+	/**
+	 * @return the plasticity rules of the network, in the order they were added. Used by Network_Snapshot.
+	 */
+	STDP_Plasticity[] plasticity(){
+		return _plasticity;
+	}
+
+	/**
+	 * @return the number of time steps run since the network was created or last reset.
+	 */
+	public int time(){
+		return _t;
+	}
+
+	/**
+	 * Called at the start of every time step so that the schedule is rebuilt only when the contents of the network have changed.
+	 */
+	protected void prepare(){
+		if(!_changed){
+			return;
+		}
+		_nodes = _node_list.toArray(new Node[_node_list.size()]);
+		ArrayList<Spiking_Node> spiking = new ArrayList<Spiking_Node>();
+		ArrayList<Node> other = new ArrayList<Node>();
+		for(Node n : _nodes){
+			if(_shared_step.get(n.getClass())){ //excludes views, and subclasses that override step(), which are stepped through their own method
+				spiking.add((Spiking_Node)n);
+			}
+			else{
+				other.add(n);
+			}
+		}
+		_spiking_nodes = spiking.toArray(new Spiking_Node[spiking.size()]);
+		_other_nodes = other.toArray(new Node[other.size()]);
+		_populations = _population_list.toArray(new Spiking_Population[_population_list.size()]);
+		_synaptic = _synaptic_list.toArray(new Synaptic_Connection[_synaptic_list.size()]);
+		_presynaptic = _presynaptic_list.toArray(new Presynaptic_Connection[_presynaptic_list.size()]);
+		_projections = _projection_list.toArray(new Projection[_projection_list.size()]);
+		_float_populations = _float_population_list.toArray(new Float_Population[_float_population_list.size()]);
+		_float_projections = _float_projection_list.toArray(new Float_Projection[_float_projection_list.size()]);
+		_dispatcher = new Presynaptic_Dispatcher(_presynaptic);
+		if(_event_driven){
+			build_event_groups();
+		}
+		if(_pool != null){
+			build_tasks();
+		}
+		_changed = false;
+	}
+
+	/**
+	 * Groups the synaptic connections by source, in the order the sources first appear. Connections that receive presynaptic input are also listed separately
+	 * as they have to be sent even when their source is silent.
+	 */
+	private void build_event_groups(){
+		HashSet<Connection> gated = new HashSet<Connection>();
+		for(Presynaptic_Connection c : _presynaptic){
+			gated.add(c.get_reciever());
+		}
+		LinkedHashMap<Node, ArrayList<Synaptic_Connection>> groups = new LinkedHashMap<Node, ArrayList<Synaptic_Connection>>();
+		for(Synaptic_Connection c : _synaptic){
+			groups.computeIfAbsent(c.get_source(), k -> new ArrayList<Synaptic_Connection>()).add(c);
+		}
+		int g = 0;
+		_group_source = new Node[groups.size()];
+		_group_members = new Synaptic_Connection[groups.size()][];
+		_group_gated = new Synaptic_Connection[groups.size()][];
+		_group_send = new boolean[groups.size()];
+		_group_was_active = new boolean[groups.size()];
+		for(Map.Entry<Node, ArrayList<Synaptic_Connection>> e : groups.entrySet()){
+			ArrayList<Synaptic_Connection> members_gated = new ArrayList<Synaptic_Connection>();
+			for(Synaptic_Connection c : e.getValue()){
+				if(gated.contains(c)){
+					members_gated.add(c);
+				}
+			}
+			_group_source[g] = e.getKey();
+			_group_members[g] = e.getValue().toArray(new Synaptic_Connection[e.getValue().size()]);
+			_group_gated[g] = members_gated.toArray(new Synaptic_Connection[members_gated.size()]);
+			g++;
+		}
+		LinkedHashSet<Spiking_Population> sources = new LinkedHashSet<Spiking_Population>();
+		for(Projection p : _projections){
+			sources.add(p.get_source());
+		}
+		_projection_sources = sources.toArray(new Spiking_Population[sources.size()]);
+	}
+
+	/**
+	 * Decides which source groups are sent this time step. A group is sent while its source has non-zero output and for one more step after it falls silent,
+	 * so that the connections record a previous signal of 0 exactly as they would if they were sent every step.
+	 */
+	private void mark_active_sources(){
+		for(int g = 0; g < _group_source.length; g++){
+			Node n = _group_source[g];
+			boolean active;
+			if(n instanceof Spiking_Node){
+				active = ((Spiking_Node)n).glut_output_value() != 0.0 || ((Spiking_Node)n).gaba_output_value() != 0.0;
+			}
+			else{
+				active = n.output_value() != 0.0;
+			}
+			_group_send[g] = active || _group_was_active[g];
+			_group_was_active[g] = active;
+		}
+		for(Spiking_Population p : _projection_sources){
+			p.update_active_sources();
+		}
+	}
+
+	/**
+	 * Splits the work of each phase into tasks for the worker pool. Connections are grouped by their receiver and each group is kept whole within one task.
+	 */
+	private void build_tasks(){
+		int chunks = _parallelism * 4;
+
+		if(_event_driven){
+			_synaptic_tasks = event_send_tasks(chunks);
+		}
+		else{
+			LinkedHashMap<Node, ArrayList<Connection>> groups = new LinkedHashMap<Node, ArrayList<Connection>>();
+			for(Synaptic_Connection c : _synaptic){
+				groups.computeIfAbsent(c.get_reciever(), k -> new ArrayList<Connection>()).add(c);
+			}
+			_synaptic_tasks = send_tasks(groups.values(), _synaptic.length, chunks);
+		}
+
+		//Projections into the same population are delivered by the same tasks, one range of targets each, so that no target is written by two tasks
+		_projection_tasks = new ArrayList<Callable<Object>>();
+		LinkedHashMap<Spiking_Population, ArrayList<Projection>> by_target = new LinkedHashMap<Spiking_Population, ArrayList<Projection>>();
+		for(Projection p : _projections){
+			p.build_columns();
+			by_target.computeIfAbsent(p.get_target(), k -> new ArrayList<Projection>()).add(p);
+		}
+		for(Map.Entry<Spiking_Population, ArrayList<Projection>> e : by_target.entrySet()){
+			final Projection[] projections = e.getValue().toArray(new Projection[e.getValue().size()]);
+			int size = e.getKey().size();
+			int target_chunk = Math.max(_min_population_chunk, (size + chunks - 1) / chunks);
+			for(int from = 0; from < size; from += target_chunk){
+				final int lo = from;
+				final int hi = Math.min(from + target_chunk, size);
+				_projection_tasks.add(() -> {
+					for(Projection p : projections){
+						if(_event_driven){
+							p.deliver_active_targets(lo, hi);
+						}
+						else{
+							p.deliver_targets(lo, hi);
+						}
+					}
+					return null;
+				});
+			}
+		}
+		//float projections write only the inputs of float populations, so their tasks run in the same phase
+		LinkedHashMap<Float_Population, ArrayList<Float_Projection>> by_float_target = new LinkedHashMap<Float_Population, ArrayList<Float_Projection>>();
+		for(Float_Projection p : _float_projections){
+			p.build_columns();
+			by_float_target.computeIfAbsent(p.get_target(), k -> new ArrayList<Float_Projection>()).add(p);
+		}
+		for(Map.Entry<Float_Population, ArrayList<Float_Projection>> e : by_float_target.entrySet()){
+			final Float_Projection[] projections = e.getValue().toArray(new Float_Projection[e.getValue().size()]);
+			int size = e.getKey().size();
+			int target_chunk = Math.max(_min_population_chunk, (size + chunks - 1) / chunks);
+			for(int from = 0; from < size; from += target_chunk){
+				final int lo = from;
+				final int hi = Math.min(from + target_chunk, size);
+				_projection_tasks.add(() -> {
+					for(Float_Projection p : projections){
+						p.deliver_targets(lo, hi);
+					}
+					return null;
+				});
+			}
+		}
+
+		_integrate_tasks = new ArrayList<Callable<Object>>();
+		int node_chunk = Math.max(1, (_nodes.length + chunks - 1) / chunks);
+		for(int from = 0; from < _nodes.length; from += node_chunk){
+			final int lo = from;
+			final int hi = Math.min(from + node_chunk, _nodes.length);
+			_integrate_tasks.add(() -> {
+				step_nodes(lo, hi);
+				return null;
+			});
+		}
+		for(Spiking_Population p : _populations){
+			int population_chunk = Math.max(_min_population_chunk, (p.size() + chunks - 1) / chunks);
+			for(int from = 0; from < p.size(); from += population_chunk){
+				final int lo = from;
+				final int hi = Math.min(from + population_chunk, p.size());
+				_integrate_tasks.add(() -> {
+					p.integrate(lo, hi);
+					return null;
+				});
+			}
+		}
+		for(Float_Population p : _float_populations){
+			int population_chunk = Math.max(_min_population_chunk, (p.size() + chunks - 1) / chunks);
+			for(int from = 0; from < p.size(); from += population_chunk){
+				final int lo = from;
+				final int hi = Math.min(from + population_chunk, p.size());
+				_integrate_tasks.add(() -> {
+					p.integrate(lo, hi);
+					return null;
+				});
+			}
+		}
+	}
+
+	/**
+	 * @return tasks that each send whole groups of connections, with roughly equal numbers of connections per task.
+	 */
+	private static ArrayList<Callable<Object>> send_tasks(Collection<ArrayList<Connection>> groups, int total, int chunks){
+		ArrayList<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+		int target = Math.max(1, (total + chunks - 1) / chunks);
+		ArrayList<Connection> chunk = new ArrayList<Connection>();
+		for(ArrayList<Connection> group : groups){
+			chunk.addAll(group);
+			if(chunk.size() >= target){
+				tasks.add(send_task(chunk));
+				chunk = new ArrayList<Connection>();
+			}
+		}
+		if(!chunk.isEmpty()){
+			tasks.add(send_task(chunk));
+		}
+		return tasks;
+	}
+
+	/**
+	 * Event driven tasks, grouped by receiver like send_tasks(). Within a receiver the connections are ordered by source group,
+	 * which is the order the single threaded event driven delivery visits them in, so both give bit-identical results.
+	 */
+	private ArrayList<Callable<Object>> event_send_tasks(int chunks){
+		IdentityHashMap<Synaptic_Connection, Integer> group_of = new IdentityHashMap<Synaptic_Connection, Integer>();
+		HashSet<Synaptic_Connection> gated = new HashSet<Synaptic_Connection>();
+		LinkedHashMap<Node, ArrayList<Synaptic_Connection>> by_receiver = new LinkedHashMap<Node, ArrayList<Synaptic_Connection>>();
+		for(int g = 0; g < _group_members.length; g++){
+			for(Synaptic_Connection c : _group_members[g]){
+				group_of.put(c, g);
+				by_receiver.computeIfAbsent(c.get_reciever(), k -> new ArrayList<Synaptic_Connection>()).add(c);
+			}
+			gated.addAll(Arrays.asList(_group_gated[g]));
+		}
+		ArrayList<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+		int target = Math.max(1, (_synaptic.length + chunks - 1) / chunks);
+		ArrayList<Synaptic_Connection> chunk = new ArrayList<Synaptic_Connection>();
+		Iterator<ArrayList<Synaptic_Connection>> it = by_receiver.values().iterator();
+		while(it.hasNext()){
+			chunk.addAll(it.next());
+			if(chunk.size() >= target || !it.hasNext()){
+				final Synaptic_Connection[] connections = chunk.toArray(new Synaptic_Connection[chunk.size()]);
+				final int[] groups = new int[connections.length];
+				final boolean[] always = new boolean[connections.length];
+				for(int k = 0; k < connections.length; k++){
+					groups[k] = group_of.get(connections[k]);
+					always[k] = gated.contains(connections[k]);
+				}
+				tasks.add(() -> {
+					for(int k = 0; k < connections.length; k++){
+						if(_group_send[groups[k]] || always[k]){
+							connections[k].send();
+						}
+					}
+					return null;
+				});
+				chunk = new ArrayList<Synaptic_Connection>();
+			}
+		}
+		return tasks;
+	}
+
+	private static Callable<Object> send_task(ArrayList<Connection> chunk){
+		final Connection[] connections = chunk.toArray(new Connection[chunk.size()]);
+		return () -> {
+			for(Connection c : connections){
+				c.send();
+			}
+			return null;
+		};
+	}
+
+	private void run_phase(ArrayList<Callable<Object>> tasks){
+		run_tasks(_pool, tasks);
+	}
+
+	/**
+	 * Runs the tasks of a phase on the pool and waits for all of them to finish.
+	 */
+	static void run_tasks(ExecutorService pool, List<Callable<Object>> tasks){
+		try{
+			for(Future<Object> f : pool.invokeAll(tasks)){
+				f.get();
+			}
+		}
+		catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while stepping the network", e);
+		}
+		catch(ExecutionException e){
+			if(e.getCause() instanceof RuntimeException){
+				throw (RuntimeException)e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * This method advances the network by a single time step.
+	 */
+	public void step(){
+		if(_metrics != null || Network_Tick_Event.enabled()){
+			step_instrumented();
+			return;
+		}
+		prepare();
+		deliver_presynaptic();
+		deliver_synaptic();
+		integrate();
+		_t++;
+		finish_step();
+	}
+
+	/**
+	 * Runs the plasticity rules and then the probes, once the neurons have been integrated.
+	 */
+	private void finish_step(){
+		for(STDP_Plasticity rule : _plasticity){
+			rule.update();
+		}
+		for(State_Probe probe : _probes){
+			probe.sample(_t);
+		}
+	}
+
+	/**
+	 * The version of step() used while metrics are enabled or a flight recording is taking Network_Tick_Events. It times each phase and counts the spikes
+	 * and synaptic deliveries of the step, which step() skips entirely otherwise. The spikes of populations are counted by their step spike lists,
+	 * so only the standalone nodes are visited; the neurons of a population are only scanned for its Population_Tick_Event.
+	 */
+	private void step_instrumented(){
+		long start = System.nanoTime();
+		prepare();
+		deliver_presynaptic();
+		long presynaptic_end = System.nanoTime();
+		deliver_synaptic();
+		long synaptic_end = System.nanoTime();
+		integrate();
+		long integrate_end = System.nanoTime();
+		_t++;
+		finish_step();
+
+		int spikes = 0;
+		for(Node n : _nodes){
+			if(n instanceof Spiking_Node && ((Spiking_Node)n).did_spike()){
+				spikes++;
+			}
+		}
+		boolean population_events = Population_Tick_Event.enabled();
+		int[] population_spikes = new int[_populations.length + _float_populations.length]; //the float populations follow the others
+		for(int k = 0; k < population_spikes.length; k++){
+			Neuron_Population p = (k < _populations.length) ? _populations[k] : _float_populations[k - _populations.length];
+			population_spikes[k] = p.step_spike_count();
+			spikes += population_spikes[k];
+			if(population_events){
+				long history = 0;
+				for(int i = 0; i < p.size(); i++){
+					history += p.spike_history(i).size();
+				}
+				Population_Tick_Event event = new Population_Tick_Event();
+				event.tick = _t;
+				event.population = k;
+				event.size = p.size();
+				event.spikes = population_spikes[k];
+				event.mean_spike_history = p.size() == 0 ? 0.0 : (double)history / p.size();
+				event.commit();
+			}
+		}
+		long deliveries = count_deliveries();
+
+		if(_metrics != null){
+			_metrics.record(presynaptic_end - start, synaptic_end - presynaptic_end, integrate_end - synaptic_end, integrate_end - start, spikes, population_spikes, deliveries);
+		}
+		Network_Tick_Event event = new Network_Tick_Event();
+		if(event.isEnabled()){
+			event.tick = _t;
+			event.presynaptic_ns = presynaptic_end - start;
+			event.synaptic_ns = synaptic_end - presynaptic_end;
+			event.integrate_ns = integrate_end - synaptic_end;
+			event.spikes = spikes;
+			event.deliveries = deliveries;
+			event.commit();
+		}
+	}
+
+	/**
+	 * @return the number of connections and projection synapses that delivered a signal in the last time step.
+	 * Float projections skip silent sources in either mode, so only their active synapses are counted.
+	 */
+	private long count_deliveries(){
+		long deliveries = _presynaptic.length;
+		for(Float_Projection p : _float_projections){
+			deliveries += p.active_synapse_count();
+		}
+		if(!_event_driven){
+			deliveries += _synaptic.length;
+			for(Projection p : _projections){
+				deliveries += p.synapse_count();
+			}
+			return deliveries;
+		}
+		for(int g = 0; g < _group_members.length; g++){
+			deliveries += _group_send[g] ? _group_members[g].length : _group_gated[g].length;
+		}
+		for(Projection p : _projections){
+			Spiking_Population src = p.get_source();
+			for(int a = 0; a < src.active_source_count(); a++){
+				int i = src.active_source(a);
+				deliveries += p.row_start(i + 1) - p.row_start(i);
+			}
+		}
+		return deliveries;
+	}
+
+	/**
+	 * Starts collecting Network_Metrics and registers them with the platform MBean server under model:type=Network,name="name".
+	 * While metrics are enabled every step is timed and its spikes and deliveries are counted.
+	 * @param name
+	 * @return the metrics
+	 * @throws IllegalStateException if the MBean cannot be registered, for example because the name is already in use
+	 */
+	public Network_Metrics enable_metrics(String name){
+		disable_metrics();
+		try{
+			_metrics = new Network_Metrics(this, name);
+		}
+		catch(javax.management.JMException e){
+			throw new IllegalStateException("Could not register the metrics of the network", e);
+		}
+		return _metrics;
+	}
+
+	/**
+	 * Stops collecting metrics and unregisters the MBean.
+	 */
+	public void disable_metrics(){
+		if(_metrics != null){
+			_metrics.unregister();
+			_metrics = null;
+		}
+		return;
+	}
+
+	public Network_Metrics get_metrics(){
+		return _metrics;
+	}
+
+	/**
+	 * Advances the network by the given number of time steps.
+	 * @param ticks
+	 */
+	public void run(int ticks){
+		for(int i = 0; i < ticks; i++){
+			step();
+		}
+		return;
+	}
+
+	/**
+	 * Phase 1: every presynaptic connection adds its signal to the presynaptic input of its receiving connection.
+	 * Presynaptic connections that receive presynaptic input themselves are sent after their senders, one level of the dependency graph at a time.
+	 */
+	protected void deliver_presynaptic(){
+		if(_pool != null){
+			_dispatcher.dispatch(_pool, _parallelism * 4);
+			return;
+		}
+		_dispatcher.dispatch();
+	}
+
+	/**
+	 * Phase 2: every synaptic connection adds its signal to the input of its receiving node.
+	 * When event driven, connections are visited grouped by source and the groups of sources with zero output are skipped, apart from connections
+	 * that receive presynaptic input, which are always sent so that pending presynaptic input is delivered and cleared. Projections only scan the rows
+	 * of their active sources. Skipped synapses would only have added 0, although grouping by source can change the order inputs are summed in.
+	 */
+	protected void deliver_synaptic(){
+		if(_event_driven){
+			mark_active_sources();
+		}
+		if(_pool != null){
+			run_phase(_synaptic_tasks);
+			run_phase(_projection_tasks);
+			return;
+		}
+		if(_event_driven){
+			for(int g = 0; g < _group_members.length; g++){
+				for(Synaptic_Connection c : _group_send[g] ? _group_members[g] : _group_gated[g]){
+					c.send();
+				}
+			}
+			for(Projection p : _projections){
+				p.deliver_active();
+			}
+			deliver_float();
+			return;
+		}
+		for(Synaptic_Connection c : _synaptic){
+			c.send();
+		}
+		for(Projection p : _projections){
+			p.deliver();
+		}
+		deliver_float();
+	}
+
+	/**
+	 * Delivers the single precision projections, after the others, when there is no worker pool. Float_Projection skips the rows of silent sources
+	 * in either mode. With a pool they are delivered by target ranges among the _projection_tasks instead, see build_tasks().
+	 */
+	private void deliver_float(){
+		for(Float_Projection p : _float_projections){
+			p.deliver();
+		}
+	}
+
+	/**
+	 * Phase 3: every node and population is advanced by one step.
+	 */
+	protected void integrate(){
+		if(_pool != null){
+			for(Spiking_Population p : _populations){
+				p.advance_clock();
+			}
+			for(Float_Population p : _float_populations){
+				p.advance_clock();
+			}
+			run_phase(_integrate_tasks);
+			return;
+		}
+		step_nodes(0, _nodes.length);
+		for(Spiking_Population p : _populations){
+			p.step_all();
+		}
+		for(Float_Population p : _float_populations){
+			p.step_all();
+		}
+	}
+
+	/**
+	 * Steps the nodes from index from to index to of the spiking nodes followed by the other nodes. Nodes do not depend on each other within a phase, so the order is free.
+	 * Every Spiking_Node that keeps the shared step() is integrated by the same final method, so the first loop is a monomorphic call site whatever mix of neuron types
+	 * the network holds. Subclasses that override step() are among the other nodes.
+	 * @param from
+	 * @param to
+	 */
+	private void step_nodes(int from, int to){
+		final Spiking_Node[] spiking = _spiking_nodes;
+		int split = spiking.length;
+		for(int i = from; i < Math.min(to, split); i++){
+			spiking[i].integrate();
+		}
+		for(int i = Math.max(from, split); i < to; i++){
+			_other_nodes[i - split].step();
+		}
+	}
+
+	/**
+	 * Often neural networks are run many times. This method resets every node, population and connection between trials. Connection weights are kept.
+	 */
+	public void reset_network(){
+		for(Node n : _node_list){
+			n.reset_node();
+		}
+		for(Spiking_Population p : _population_list){
+			p.reset_population();
+		}
+		for(Float_Population p : _float_population_list){
+			p.reset_population();
+		}
+		for(Connection c : _presynaptic_list){
+			c.reset_connection();
+		}
+		for(Connection c : _synaptic_list){
+			c.reset_connection();
+		}
+		if(_group_was_active != null){
+			Arrays.fill(_group_was_active, false);
+		}
+		for(State_Probe probe : _probes){
+			probe.reset_probe();
+		}
+		for(STDP_Plasticity rule : _plasticity){
+			rule.reset_traces();
+		}
+		_t = 0;
+	}
+}
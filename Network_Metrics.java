@@ -0,0 +1,168 @@
+package model;
+
+import java.lang.management.*;
+import java.util.*;
+import javax.management.*;
+
+/**
+ * Running totals of the work done by a Network, published as a JMX MBean so that a running job can be inspected with jconsole or any JMX client.
+ * Created by Network.enable_metrics(). The totals are updated by the thread stepping the network and may be read from any thread.
+ * The spike history sizes are calculated when they are read, by scanning every node and neuron.
+ * @author Scaed
+ *
+ */
+public class Network_Metrics implements Network_MetricsMBean {
+
+	private final Network _network;
+	private final ObjectName _name;
+	private volatile long _ticks = 0;
+	private volatile long _presynaptic_ns = 0;
+	private volatile long _synaptic_ns = 0;
+	private volatile long _integrate_ns = 0;
+	private volatile long _last_tick_ns = 0;
+	private volatile long _spikes = 0;
+	private volatile int _last_tick_spikes = 0;
+	private volatile int[] _last_tick_population_spikes = new int[0];
+	private volatile long _deliveries = 0;
+	private volatile long _last_tick_deliveries = 0;
+
+	Network_Metrics(Network network, String name) throws JMException{
+		_network = network;
+		_name = new ObjectName("model:type=Network,name=" + ObjectName.quote(name));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, _name);
+	}
+
+	void unregister(){
+		try{
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(_name);
+		}
+		catch(JMException e){
+			//already unregistered
+		}
+	}
+
+	/**
+	 * Adds one time step to the totals. Only ever called by the thread stepping the network.
+	 */
+	void record(long presynaptic_ns, long synaptic_ns, long integrate_ns, long tick_ns, int spikes, int[] population_spikes, long deliveries){
+		_ticks++;
+		_presynaptic_ns += presynaptic_ns;
+		_synaptic_ns += synaptic_ns;
+		_integrate_ns += integrate_ns;
+		_last_tick_ns = tick_ns;
+		_spikes += spikes;
+		_last_tick_spikes = spikes;
+		_last_tick_population_spikes = population_spikes;
+		_deliveries += deliveries;
+		_last_tick_deliveries = deliveries;
+		return;
+	}
+
+	public ObjectName get_name(){
+		return _name;
+	}
+
+	public long getTicks(){
+		return _ticks;
+	}
+
+	public long getPresynapticNanos(){
+		return _presynaptic_ns;
+	}
+
+	public long getSynapticNanos(){
+		return _synaptic_ns;
+	}
+
+	public long getIntegrateNanos(){
+		return _integrate_ns;
+	}
+
+	public double getMeanTickMicros(){
+		long ticks = _ticks;
+		return ticks == 0 ? 0.0 : (_presynaptic_ns + _synaptic_ns + _integrate_ns) / (1000.0 * ticks);
+	}
+
+	public long getLastTickNanos(){
+		return _last_tick_ns;
+	}
+
+	public long getSpikes(){
+		return _spikes;
+	}
+
+	public int getLastTickSpikes(){
+		return _last_tick_spikes;
+	}
+
+	/**
+	 * @return the spike counts of the populations of the network in the last time step, in the order of Network.get_populations() followed by Network.get_float_populations().
+	 */
+	public int[] getLastTickPopulationSpikes(){
+		return _last_tick_population_spikes.clone();
+	}
+
+	public long getDeliveries(){
+		return _deliveries;
+	}
+
+	public long getLastTickDeliveries(){
+		return _last_tick_deliveries;
+	}
+
+	public double getMeanSpikeHistorySize(){
+		long total = 0;
+		long count = 0;
+		for(Node n : _network.get_nodes()){
+			if(n instanceof Spiking_Node){
+				total += ((Spiking_Node)n).spike_history().size();
+				count++;
+			}
+		}
+		for(Neuron_Population p : populations()){
+			for(int i = 0; i < p.size(); i++){
+				total += p.spike_history(i).size();
+			}
+			count += p.size();
+		}
+		return count == 0 ? 0.0 : (double)total / count;
+	}
+
+	public int getMaxSpikeHistorySize(){
+		int max = 0;
+		for(Node n : _network.get_nodes()){
+			if(n instanceof Spiking_Node){
+				max = Math.max(max, ((Spiking_Node)n).spike_history().size());
+			}
+		}
+		for(Neuron_Population p : populations()){
+			for(int i = 0; i < p.size(); i++){
+				max = Math.max(max, p.spike_history(i).size());
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * @return the double and single precision populations of the network
+	 */
+	private List<Neuron_Population> populations(){
+		ArrayList<Neuron_Population> populations = new ArrayList<Neuron_Population>(_network.get_populations());
+		populations.addAll(_network.get_float_populations());
+		return populations;
+	}
+
+	public void reset(){
+		_ticks = 0;
+		_presynaptic_ns = 0;
+		_synaptic_ns = 0;
+		_integrate_ns = 0;
+		_last_tick_ns = 0;
+		_spikes = 0;
+		_last_tick_spikes = 0;
+		_last_tick_population_spikes = new int[0];
+		_deliveries = 0;
+		_last_tick_deliveries = 0;
+		return;
+	}
+}
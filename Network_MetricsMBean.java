@@ -0,0 +1,37 @@
+package model;
+
+/**
+ * The JMX management interface of Network_Metrics.
+ * @author Scaed
+ *
+ */
+public interface Network_MetricsMBean {
+
+	long getTicks();
+
+	long getPresynapticNanos();
+
+	long getSynapticNanos();
+
+	long getIntegrateNanos();
+
+	double getMeanTickMicros();
+
+	long getLastTickNanos();
+
+	long getSpikes();
+
+	int getLastTickSpikes();
+
+	int[] getLastTickPopulationSpikes();
+
+	long getDeliveries();
+
+	long getLastTickDeliveries();
+
+	double getMeanSpikeHistorySize();
+
+	int getMaxSpikeHistorySize();
+
+	void reset();
+}
@@ -0,0 +1,503 @@
+package model;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Saves the full dynamic state of a Network to a binary file and restores it, so that a long warm-up can be run once and then branched into many conditions.
+ * The state covers the clock, the input, output, membrane potential, u and spike history of every node and population neuron, the recursive output traces,
+ * the input still travelling along delayed connections, the weights and pending presynaptic input of every connection, the weights of every projection
+ * and the traces and pending weight changes of every STDP_Plasticity rule added to the network. Single precision populations and projections, see Float_Population,
+ * are saved with their float columns as they are.
+ * The file is written through a FileChannel in large blocks and read back through memory mapped windows with bulk copies into the primitive arrays,
+ * so restoring a population of millions of neurons takes milliseconds.
+ * A snapshot can be restored into the network it was taken from or into any network of the same structure, such as a replica made with Network.replicate().
+ * The noise seeds of populations are restored, so populations continue exactly as they would have. The noise stream of a Spiking_Node cannot be read back,
+ * so nodes continue with their current stream; use Network.set_noise_seed() after a restore to make a branch reproducible.
+ * @author Scaed
+ *
+ */
+public final class Network_Snapshot {
+
+	private static final int _magic = 0x534E4E31; //"SNN1"
+	private static final int _version = 5;
+	private static final int _buffer_size = 1 << 20;
+	private static final long _window_size = 1L << 30;
+
+	private Network_Snapshot(){
+	}
+
+	/**
+	 * Writes the state of the network to file, replacing it if it exists.
+	 * @param network
+	 * @param file
+	 * @throws IOException
+	 */
+	public static void save(Network network, Path file) throws IOException{
+		network.prepare();
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+			Writer out = new Writer(channel);
+			out.put_int(_magic);
+			out.put_int(_version);
+			out.put_int(network._t);
+			out.put_int(network.get_nodes().size());
+			out.put_int(network.get_populations().size());
+			out.put_int(network.get_synaptic_connections().size());
+			out.put_int(network.get_presynaptic_connections().size());
+			out.put_int(network.get_projections().size());
+			out.put_int(network.get_float_populations().size());
+			out.put_int(network.get_float_projections().size());
+
+			for(Node n : network.get_nodes()){
+				out.put_double(n._input[0]);
+				out.put_double(n._output[0]);
+				if(n instanceof Spiking_Node && !(n instanceof Population_Node)){ //a view is saved with its population
+					Spiking_Node s = (Spiking_Node)n;
+					out.put_int(1);
+					out.put_int(s._t[0]);
+					out.put_double(s._membrane_potential[0]);
+					out.put_double(s._u[0]);
+					out.put_double(s._glut_output[0]);
+					out.put_double(s._gaba_output[0]);
+					out.put_history(s._spike_times);
+					out.put_int(s._recursive_output ? 1 : 0);
+					out.put_doubles(s._glut_trace);
+					out.put_doubles(s._gaba_trace);
+				}
+				else{
+					out.put_int(0);
+				}
+				out.put_delays(n.delay_buffer());
+			}
+
+			for(Spiking_Population p : network.get_populations()){
+				out.put_int(p._size);
+				out.put_int(p._t);
+				out.put_long(p.get_noise_seed());
+				out.put_doubles(p._membrane_potential);
+				out.put_doubles(p._u);
+				out.put_doubles(p._input);
+				out.put_doubles(p._glut_output);
+				out.put_doubles(p._gaba_output);
+				for(Spike_History history : p._spike_times){
+					out.put_history(history);
+				}
+				out.put_int(p._recursive_output ? 1 : 0);
+				if(p._recursive_output){
+					out.put_doubles(p._glut_trace[0]);
+					out.put_doubles(p._glut_trace[1]);
+					out.put_doubles(p._gaba_trace[0]);
+					out.put_doubles(p._gaba_trace[1]);
+				}
+				out.put_delays(p.delay_buffer());
+			}
+			for(Float_Population p : network.get_float_populations()){
+				out.put_int(p._size);
+				out.put_int(p._t);
+				out.put_long(p.get_noise_seed());
+				out.put_floats(p._membrane_potential);
+				out.put_floats(p._u);
+				out.put_floats(p._input);
+				out.put_floats(p._glut_output);
+				out.put_floats(p._gaba_output);
+				for(Spike_History history : p._spike_times){
+					out.put_history(history);
+				}
+			}
+
+			for(Connection c : network.get_synaptic_connections()){
+				out.put_connection(c);
+			}
+			for(Connection c : network.get_presynaptic_connections()){
+				out.put_connection(c);
+			}
+			for(Projection p : network.get_projections()){
+				out.put_int(p.synapse_count());
+				out.put_doubles(p._weight);
+			}
+			for(Float_Projection p : network.get_float_projections()){
+				out.put_int(p.synapse_count());
+				out.put_floats(p._weight);
+			}
+			out.put_int(network.plasticity().length);
+			for(STDP_Plasticity rule : network.plasticity()){
+				out.put_int(rule._pre_trace.length);
+				out.put_int(rule._post_trace.length);
+				out.put_doubles(rule._pre_trace);
+				out.put_ints(rule._pre_time);
+				out.put_doubles(rule._post_trace);
+				out.put_ints(rule._post_time);
+				out.put_int(rule.is_deferred() ? 1 : 0);
+				out.put_int(rule._pending == null ? -1 : rule._pending.length);
+				if(rule._pending != null){
+					out.put_doubles(rule._pending);
+				}
+			}
+
+			boolean[] was_active = network.group_was_active();
+			out.put_int(was_active == null ? 0 : was_active.length);
+			if(was_active != null){
+				for(boolean b : was_active){
+					out.put_int(b ? 1 : 0);
+				}
+			}
+			out.flush();
+		}
+	}
+
+	/**
+	 * Sets the state of the network to the one saved in file.
+	 * @param network a network with the same structure as the one that was saved
+	 * @param file
+	 * @throws IOException
+	 * @throws IllegalArgumentException if the file is not a snapshot or the network does not match it
+	 */
+	public static void restore(Network network, Path file) throws IOException{
+		network.prepare();
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+			Reader in = new Reader(channel);
+			if(in.get_int() != _magic || in.get_int() != _version){
+				throw new IllegalArgumentException(file + " is not a network snapshot.");
+			}
+			int t = in.get_int();
+			check(in.get_int(), network.get_nodes().size(), "nodes");
+			check(in.get_int(), network.get_populations().size(), "populations");
+			check(in.get_int(), network.get_synaptic_connections().size(), "synaptic connections");
+			check(in.get_int(), network.get_presynaptic_connections().size(), "presynaptic connections");
+			check(in.get_int(), network.get_projections().size(), "projections");
+			check(in.get_int(), network.get_float_populations().size(), "float populations");
+			check(in.get_int(), network.get_float_projections().size(), "float projections");
+
+			for(Node n : network.get_nodes()){
+				n._input[0] = in.get_double();
+				n._output[0] = in.get_double();
+				boolean spiking = n instanceof Spiking_Node && !(n instanceof Population_Node);
+				check(in.get_int(), spiking ? 1 : 0, "spiking nodes");
+				if(spiking){
+					Spiking_Node s = (Spiking_Node)n;
+					s._t[0] = in.get_int();
+					s._membrane_potential[0] = in.get_double();
+					s._u[0] = in.get_double();
+					s._glut_output[0] = in.get_double();
+					s._gaba_output[0] = in.get_double();
+					in.get_history(s._spike_times);
+					s._recursive_output = in.get_int() == 1;
+					in.get_doubles(s._glut_trace);
+					in.get_doubles(s._gaba_trace);
+					s.wake();
+				}
+				int max_delay = in.get_int();
+				if(max_delay >= 0){
+					n.ensure_delay(max_delay);
+					in.get_delays(n.delay_buffer(), max_delay);
+				}
+				else if(n.delay_buffer() != null){
+					n.delay_buffer().clear();
+				}
+			}
+
+			for(Spiking_Population p : network.get_populations()){
+				check(in.get_int(), p._size, "neurons in a population");
+				p.wake();
+				p._t = in.get_int();
+				p.set_noise_seed(in.get_long());
+				in.get_doubles(p._membrane_potential);
+				in.get_doubles(p._u);
+				in.get_doubles(p._input);
+				in.get_doubles(p._glut_output);
+				in.get_doubles(p._gaba_output);
+				for(Spike_History history : p._spike_times){
+					in.get_history(history);
+				}
+				boolean recursive = in.get_int() == 1;
+				if(recursive){
+					if(!p._recursive_output){
+						p.set_recursive_output(true);
+					}
+					in.get_doubles(p._glut_trace[0]);
+					in.get_doubles(p._glut_trace[1]);
+					in.get_doubles(p._gaba_trace[0]);
+					in.get_doubles(p._gaba_trace[1]);
+				}
+				else if(p._recursive_output){
+					p.set_recursive_output(false);
+				}
+				int max_delay = in.get_int();
+				if(max_delay >= 0){
+					p.ensure_delay(max_delay);
+					in.get_delays(p.delay_buffer(), max_delay);
+				}
+				else if(p.delay_buffer() != null){
+					p.delay_buffer().clear();
+				}
+			}
+			for(Float_Population p : network.get_float_populations()){
+				check(in.get_int(), p._size, "neurons in a float population");
+				p._t = in.get_int();
+				p.set_noise_seed(in.get_long());
+				in.get_floats(p._membrane_potential);
+				in.get_floats(p._u);
+				in.get_floats(p._input);
+				in.get_floats(p._glut_output);
+				in.get_floats(p._gaba_output);
+				for(Spike_History history : p._spike_times){
+					in.get_history(history);
+				}
+			}
+
+			for(Connection c : network.get_synaptic_connections()){
+				in.get_connection(c);
+			}
+			for(Connection c : network.get_presynaptic_connections()){
+				in.get_connection(c);
+			}
+			for(Projection p : network.get_projections()){
+				check(in.get_int(), p.synapse_count(), "synapses in a projection");
+				in.get_doubles(p._weight);
+			}
+			for(Float_Projection p : network.get_float_projections()){
+				check(in.get_int(), p.synapse_count(), "synapses in a float projection");
+				in.get_floats(p._weight);
+			}
+			check(in.get_int(), network.plasticity().length, "plasticity rules");
+			for(STDP_Plasticity rule : network.plasticity()){
+				check(in.get_int(), rule._pre_trace.length, "source neurons in a plasticity rule");
+				check(in.get_int(), rule._post_trace.length, "target neurons in a plasticity rule");
+				in.get_doubles(rule._pre_trace);
+				in.get_ints(rule._pre_time);
+				in.get_doubles(rule._post_trace);
+				in.get_ints(rule._post_time);
+				rule.set_deferred(in.get_int() == 1);
+				int pending = in.get_int();
+				if(pending >= 0){
+					check(pending, rule.get_projection().synapse_count(), "synapses in a plasticity rule");
+					if(rule._pending == null){
+						rule._pending = new double[pending];
+					}
+					in.get_doubles(rule._pending);
+				}
+				else if(rule._pending != null){
+					Arrays.fill(rule._pending, 0.0);
+				}
+			}
+
+			boolean[] was_active = network.group_was_active();
+			int groups = in.get_int();
+			for(int g = 0; g < groups; g++){
+				boolean b = in.get_int() == 1;
+				if(was_active != null && groups == was_active.length){
+					was_active[g] = b;
+				}
+			}
+			network._t = t;
+		}
+	}
+
+	private static void check(int saved, int found, String what){
+		if(saved != found){
+			throw new IllegalArgumentException("The snapshot has " + saved + " " + what + " but the network has " + found + ".");
+		}
+	}
+
+	/**
+	 * Buffers writes in a direct buffer that is written to the channel whenever it fills up.
+	 */
+	private static final class Writer {
+		private final FileChannel _channel;
+		private final ByteBuffer _buffer = ByteBuffer.allocateDirect(_buffer_size).order(ByteOrder.LITTLE_ENDIAN);
+
+		Writer(FileChannel channel){
+			_channel = channel;
+		}
+
+		private void ensure(int bytes) throws IOException{
+			if(_buffer.remaining() < bytes){
+				flush();
+			}
+		}
+
+		void flush() throws IOException{
+			_buffer.flip();
+			while(_buffer.hasRemaining()){
+				_channel.write(_buffer);
+			}
+			_buffer.clear();
+		}
+
+		void put_int(int i) throws IOException{
+			ensure(4);
+			_buffer.putInt(i);
+		}
+
+		void put_long(long l) throws IOException{
+			ensure(8);
+			_buffer.putLong(l);
+		}
+
+		void put_double(double d) throws IOException{
+			ensure(8);
+			_buffer.putDouble(d);
+		}
+
+		void put_doubles(double[] values) throws IOException{
+			int done = 0;
+			while(done < values.length){
+				ensure(8);
+				int n = Math.min(values.length - done, _buffer.remaining() / 8);
+				_buffer.asDoubleBuffer().put(values, done, n);
+				_buffer.position(_buffer.position() + n * 8);
+				done += n;
+			}
+		}
+
+		void put_floats(float[] values) throws IOException{
+			int done = 0;
+			while(done < values.length){
+				ensure(4);
+				int n = Math.min(values.length - done, _buffer.remaining() / 4);
+				_buffer.asFloatBuffer().put(values, done, n);
+				_buffer.position(_buffer.position() + n * 4);
+				done += n;
+			}
+		}
+
+		void put_ints(int[] values) throws IOException{
+			int done = 0;
+			while(done < values.length){
+				ensure(4);
+				int n = Math.min(values.length - done, _buffer.remaining() / 4);
+				_buffer.asIntBuffer().put(values, done, n);
+				_buffer.position(_buffer.position() + n * 4);
+				done += n;
+			}
+		}
+
+		void put_history(Spike_History history) throws IOException{
+			put_int(history.size());
+			for(int i = history.size() - 1; i >= 0; i--){
+				put_int(history.get(i));
+			}
+		}
+
+		void put_connection(Connection c) throws IOException{
+			put_double(c._weight[0]);
+			put_double(c._prev_weight_chg[0]);
+			put_double(c._presynaptc_input[0]);
+			put_double(c._prev_signal_sent[0]);
+		}
+
+		void put_delays(Delay_Buffer buffer) throws IOException{
+			if(buffer == null){
+				put_int(-1);
+				return;
+			}
+			put_int(buffer.max_delay());
+			put_int(buffer.now());
+			put_doubles(buffer.slots());
+		}
+	}
+
+	/**
+	 * Reads the file through read only memory mapped windows of up to 1GB, moving the window forward whenever the next value does not fit in it.
+	 */
+	private static final class Reader {
+		private final FileChannel _channel;
+		private final long _size;
+		private long _window_start = 0;
+		private MappedByteBuffer _buffer;
+
+		Reader(FileChannel channel) throws IOException{
+			_channel = channel;
+			_size = channel.size();
+			map(0);
+		}
+
+		private void map(long position) throws IOException{
+			_window_start = position;
+			_buffer = _channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(_window_size, _size - position));
+			_buffer.order(ByteOrder.LITTLE_ENDIAN);
+		}
+
+		private void ensure(int bytes) throws IOException{
+			if(_buffer.remaining() < bytes){
+				long position = _window_start + _buffer.position();
+				if(_size - position < bytes){
+					throw new EOFException("The snapshot ends unexpectedly.");
+				}
+				map(position);
+			}
+		}
+
+		int get_int() throws IOException{
+			ensure(4);
+			return _buffer.getInt();
+		}
+
+		long get_long() throws IOException{
+			ensure(8);
+			return _buffer.getLong();
+		}
+
+		double get_double() throws IOException{
+			ensure(8);
+			return _buffer.getDouble();
+		}
+
+		void get_doubles(double[] values) throws IOException{
+			int done = 0;
+			while(done < values.length){
+				ensure(8);
+				int n = Math.min(values.length - done, _buffer.remaining() / 8);
+				_buffer.asDoubleBuffer().get(values, done, n);
+				_buffer.position(_buffer.position() + n * 8);
+				done += n;
+			}
+		}
+
+		void get_floats(float[] values) throws IOException{
+			int done = 0;
+			while(done < values.length){
+				ensure(4);
+				int n = Math.min(values.length - done, _buffer.remaining() / 4);
+				_buffer.asFloatBuffer().get(values, done, n);
+				_buffer.position(_buffer.position() + n * 4);
+				done += n;
+			}
+		}
+
+		void get_ints(int[] values) throws IOException{
+			int done = 0;
+			while(done < values.length){
+				ensure(4);
+				int n = Math.min(values.length - done, _buffer.remaining() / 4);
+				_buffer.asIntBuffer().get(values, done, n);
+				_buffer.position(_buffer.position() + n * 4);
+				done += n;
+			}
+		}
+
+		void get_history(Spike_History history) throws IOException{
+			history.clear();
+			int size = get_int();
+			for(int i = 0; i < size; i++){
+				history.record(get_int());
+			}
+		}
+
+		void get_connection(Connection c) throws IOException{
+			c._weight[0] = get_double();
+			c._prev_weight_chg[0] = get_double();
+			c._presynaptc_input[0] = get_double();
+			c._prev_signal_sent[0] = get_double();
+		}
+
+		void get_delays(Delay_Buffer buffer, int max_delay) throws IOException{
+			check(max_delay, buffer.max_delay(), "time steps of delay in a delay buffer");
+			buffer.set_now(get_int());
+			get_doubles(buffer.slots());
+		}
+	}
+}
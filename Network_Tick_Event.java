@@ -0,0 +1,47 @@
+package model;
+
+import jdk.jfr.*;
+
+/**
+ * A JDK Flight Recorder event committed by Network.step() for every time step while the event is enabled in a recording.
+ * The phase timings show whether the time of a step goes to presynaptic delivery, synaptic delivery or integration, which includes calc_output().
+ * @author Scaed
+ *
+ */
+@Name("model.NetworkTick")
+@Label("Network Tick")
+@Category("Neuron Network")
+@Description("Timing and activity of one time step of a Network")
+@StackTrace(false)
+public class Network_Tick_Event extends Event {
+
+	private static final EventType _type = EventType.getEventType(Network_Tick_Event.class);
+
+	@Label("Time Step")
+	public int tick;
+
+	@Label("Presynaptic Delivery")
+	@Timespan(Timespan.NANOSECONDS)
+	public long presynaptic_ns;
+
+	@Label("Synaptic Delivery")
+	@Timespan(Timespan.NANOSECONDS)
+	public long synaptic_ns;
+
+	@Label("Integration")
+	@Timespan(Timespan.NANOSECONDS)
+	public long integrate_ns;
+
+	@Label("Spikes")
+	public int spikes;
+
+	@Label("Synaptic Deliveries")
+	public long deliveries;
+
+	/**
+	 * @return whether any recording has the event enabled. This does not allocate, so it can be checked every time step.
+	 */
+	static boolean enabled(){
+		return _type.isEnabled();
+	}
+}
@@ -0,0 +1,251 @@
+package model;
+
+import java.util.concurrent.atomic.*;
+
+/**
+ * Abstract class for populations of neurons stored as columns, whatever the precision of the columns. Contains what Spiking_Population and Float_Population share:
+ * the spike histories and the list of the neurons that spiked in the current time step, the shared clock, the noise seed and the glutamate and GABA kernels.
+ * The state of the neurons and its arithmetic belong to the subclasses, which implement reset_neuron() and integrate().
+ * @author Scaed
+ *
+ */
+public abstract class Neuron_Population {
+
+	protected final int _size;
+	protected final Neuron_Type _type;
+	protected final Spike_History[] _spike_times;
+	protected int _t;
+	protected final double _noise_stdv;
+	protected Kernel_Table _glut_kernel;
+	protected Kernel_Table _gaba_kernel;
+
+	protected static final boolean _vector_api_available = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+	protected boolean _vectorized = false;
+	private long _noise_seed;
+	private final int[] _step_spikes; //neurons that spiked in the current time step, see step_spike()
+	private final AtomicInteger _step_spike_count = new AtomicInteger(); //ranges of the population may be integrated by several workers at once
+
+	/**
+	 * The subclass must call reset_population() once its own columns exist.
+	 * @param size the number of neurons in the population
+	 * @param type the parameters of the kind of neuron, see Neuron_Type
+	 */
+	protected Neuron_Population(int size, Neuron_Type type){
+		_size = size;
+		_type = type;
+		_noise_stdv = type.noise_stdv();
+		_noise_seed = Spiking_Node.next_seed();
+		_glut_kernel = Kernel_Table.alpha(Spiking_Node._lambda_glut);
+		_gaba_kernel = Kernel_Table.alpha(Spiking_Node._lambda_gaba);
+		_spike_times = new Spike_History[size];
+		for(int i = 0; i < size; i++){
+			_spike_times[i] = new Spike_History(spike_horizon(), spike_horizon());
+		}
+		_step_spikes = new int[size];
+	}
+
+	public int size(){
+		return _size;
+	}
+
+	/**
+	 * @return the kind of neuron the population is made of
+	 */
+	public Neuron_Type type(){
+		return _type;
+	}
+
+	/**
+	 * @return the number of time steps the population has been advanced since it was created or last reset.
+	 */
+	public int time(){
+		return _t;
+	}
+
+	/**
+	 * Often neural networks are run many times. This method resets every neuron of the population and the shared clock between trials.
+	 */
+	public void reset_population(){
+		for(int i = 0; i < _size; i++){
+			reset_neuron(i);
+		}
+		_t = 0;
+		_step_spike_count.set(0);
+		return;
+	}
+
+	/**
+	 * Resets a single neuron to its resting state. The clock is shared by the whole population and so is left unchanged.
+	 * @param i
+	 */
+	public abstract void reset_neuron(int i);
+
+	/**
+	 * This method advances every neuron of the population by a single time step.
+	 * The noise of each neuron comes from Noise_Source, keyed on the seed of the population, the time and the neuron, so it does not depend on the order neurons are visited.
+	 */
+	public void step_all(){
+		advance_clock();
+		integrate(0, _size);
+	}
+
+	/**
+	 * The first half of step_all(). Advancing the clock separately allows the integration of a large population to be split into ranges that run in parallel.
+	 */
+	public void advance_clock(){
+		_t++;
+		_step_spike_count.set(0);
+		return;
+	}
+
+	/**
+	 * The second half of step_all(). Integrates the neurons in the index range [from, to) using the time set by advance_clock().
+	 * Neurons in different ranges share no state, so different ranges can be integrated at the same time.
+	 * @param from
+	 * @param to
+	 */
+	public abstract void integrate(int from, int to);
+
+	/**
+	 * @param i
+	 * @return the noise of neuron i for the current time step, which is 0.0 for a noise free population
+	 */
+	protected double noise(int i){
+		if(_noise_stdv == 0.0){
+			return 0.0;
+		}
+		return Noise_Source.gaussian(_noise_seed, _t, i) * _noise_stdv;
+	}
+
+	/**
+	 * Sets the seed of the noise of the population. Two populations of the same kind with the same seed and input give the same result,
+	 * and a float and a double population with the same seed draw the same noise.
+	 * @param seed
+	 */
+	public void set_noise_seed(long seed){
+		_noise_seed = seed;
+		return;
+	}
+
+	public long get_noise_seed(){
+		return _noise_seed;
+	}
+
+	public boolean is_vectorized(){
+		return _vectorized;
+	}
+
+	/**
+	 * Sets the glutamate and GABA kernels of every neuron of the population. See Spiking_Node.set_kernels().
+	 * @param glut_kernel
+	 * @param gaba_kernel
+	 */
+	public void set_kernels(Kernel_Table glut_kernel, Kernel_Table gaba_kernel){
+		_glut_kernel = glut_kernel;
+		_gaba_kernel = gaba_kernel;
+		int horizon = spike_horizon();
+		for(int i = 0; i < _size; i++){
+			Spike_History history = _spike_times[i];
+			if(history.horizon() > 0 && history.horizon() < horizon){
+				history.configure(Math.max(history.capacity(), horizon), horizon);
+			}
+		}
+		return;
+	}
+
+	public Kernel_Table glut_kernel(){
+		return _glut_kernel;
+	}
+
+	public Kernel_Table gaba_kernel(){
+		return _gaba_kernel;
+	}
+
+	/**
+	 * @return the number of time steps after which a spike no longer contributes to either output
+	 */
+	protected int spike_horizon(){
+		return Math.max(_glut_kernel.length(), _gaba_kernel.length());
+	}
+
+	/**
+	 * Gives population p the kernels and spike history settings of this population, see replicate().
+	 * @param p a population of the same size
+	 */
+	protected void copy_settings_to(Neuron_Population p){
+		p.set_kernels(_glut_kernel, _gaba_kernel);
+		for(int i = 0; i < _size; i++){
+			p._spike_times[i].configure(_spike_times[i].capacity(), _spike_times[i].horizon());
+		}
+		return;
+	}
+
+	public abstract double input(int i);
+
+	public abstract void set_input_to(int i, double d);
+
+	/**
+	 * Increase the input of neuron i by d. To reduce the input use a negative value for d.
+	 * @param i
+	 * @param d
+	 */
+	public abstract void raise_input_by(int i, double d);
+
+	public abstract double membrane_potential(int i);
+
+	public abstract double u(int i);
+
+	public abstract double glut_output(int i);
+
+	public abstract double gaba_output(int i);
+
+	/**
+	 * @param i
+	 * @return true if neuron i underwent a spike during the most recent time step.
+	 */
+	public boolean did_spike(int i){
+		return _spike_times[i].size() > 0 && _spike_times[i].last_spike_time() == _t;
+	}
+
+	protected void record_spike(int i){
+		_spike_times[i].record(_t);
+		_step_spikes[_step_spike_count.getAndIncrement()] = i;
+	}
+
+	/**
+	 * @return the number of neurons that spiked in the most recent time step, see step_spike().
+	 */
+	public int step_spike_count(){
+		return _step_spike_count.get();
+	}
+
+	/**
+	 * Lists the neurons that spiked in the most recent time step, so that code that reacts to spikes, such as STDP_Plasticity, does work in proportion to the spikes
+	 * rather than to the size of the population. The list is in index order when the population is integrated by a single thread but in no particular order otherwise.
+	 * @param k between 0 and step_spike_count() - 1
+	 * @return the index of the k-th neuron that spiked in the most recent time step
+	 */
+	public int step_spike(int k){
+		return _step_spikes[k];
+	}
+
+	/**
+	 * @param i
+	 * @return the spike history of neuron i. See Spike_History for the query methods.
+	 */
+	public Spike_History spike_history(int i){
+		return _spike_times[i];
+	}
+
+	/**
+	 * Sets the capacity and time horizon of the spike history of every neuron. See Spiking_Node.set_spike_history().
+	 * @param capacity
+	 * @param horizon
+	 */
+	public void set_spike_history(int capacity, int horizon){
+		for(int i = 0; i < _size; i++){
+			_spike_times[i].configure(Math.max(capacity, 1), horizon > 0 ? Math.max(horizon, spike_horizon()) : 0);
+		}
+		return;
+	}
+}
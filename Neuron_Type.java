@@ -0,0 +1,267 @@
+package model;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * The parameters of one kind of spiking neuron in the Izhekivitch simple model. Every Spiking_Node and Spiking_Population is integrated by the same equations,
+ * so a neuron type is nothing more than these values and new types can be added without writing a class.
+ * Types with a single mode use _b for both _b_1 and _b_2. The thalamic type switches from _b_1 to _b_2 when the membrane potential rises above _b_threshold
+ * and measures u from its own resting potential _mp_rest_u.
+ * Types are kept in a registry by name. The four types of the original subclasses are registered from the start and more can be registered in code or loaded from a file, see load().
+ * @author Scaed
+ *
+ */
+public final class Neuron_Type {
+
+	private static final ConcurrentHashMap<String, Neuron_Type> _registry = new ConcurrentHashMap<String, Neuron_Type>();
+
+	public static final Neuron_Type PYRAMIDAL = register(new Neuron_Type("pyramidal", Spiking_Pyramidal_Node._mp_spike_threshold, Spiking_Pyramidal_Node._u_spike_threshold_factor,
+			Spiking_Pyramidal_Node._mp_rest, Spiking_Pyramidal_Node._threshold, Spiking_Pyramidal_Node._reset, Spiking_Pyramidal_Node._u_spike_add,
+			Spiking_Pyramidal_Node._k, Spiking_Pyramidal_Node._C, Spiking_Pyramidal_Node._a, Spiking_Pyramidal_Node._b, Spiking_Pyramidal_Node._noise_stdv));
+	public static final Neuron_Type STRIATAL = register(new Neuron_Type("striatal", Spiking_Striatal_Node._mp_spike_threshold, Spiking_Striatal_Node._u_spike_threshold_factor,
+			Spiking_Striatal_Node._mp_rest, Spiking_Striatal_Node._threshold, Spiking_Striatal_Node._reset, Spiking_Striatal_Node._u_spike_add,
+			Spiking_Striatal_Node._k, Spiking_Striatal_Node._C, Spiking_Striatal_Node._a, Spiking_Striatal_Node._b, Spiking_Striatal_Node._noise_stdv));
+	public static final Neuron_Type GP = register(new Neuron_Type("gp", Spiking_GP_Node._mp_spike_threshold, Spiking_GP_Node._u_spike_threshold_factor,
+			Spiking_GP_Node._mp_rest, Spiking_GP_Node._threshold, Spiking_GP_Node._reset, Spiking_GP_Node._u_spike_add,
+			Spiking_GP_Node._k, Spiking_GP_Node._C, Spiking_GP_Node._a, Spiking_GP_Node._b, Spiking_GP_Node._noise_stdv));
+	public static final Neuron_Type THALAMIC = register(new Neuron_Type("thalamic", Spiking_Thalamic_Node._mp_spike_threshold, Spiking_Thalamic_Node._u_spike_threshold_factor,
+			Spiking_Thalamic_Node._mp_rest, Spiking_Thalamic_Node._mp_rest_u, Spiking_Thalamic_Node._threshold, Spiking_Thalamic_Node._reset, Spiking_Thalamic_Node._u_spike_add,
+			Spiking_Thalamic_Node._k, Spiking_Thalamic_Node._C, Spiking_Thalamic_Node._a, Spiking_Thalamic_Node._b_1, Spiking_Thalamic_Node._b_2, Spiking_Thalamic_Node._b_threshold,
+			Spiking_Thalamic_Node._noise_stdv));
+
+	private final String _name;
+	private final double _mp_spike_threshold;
+	private final double _u_spike_threshold_factor;
+	private final double _mp_rest;
+	private final double _mp_rest_u;
+	private final double _threshold;
+	private final double _reset;
+	private final double _u_spike_add;
+	private final double _k;
+	private final double _C;
+	private final double _a;
+	private final double _b_1;
+	private final double _b_2;
+	private final double _b_threshold;
+	private final double _noise_stdv;
+
+	/**
+	 * Creates a neuron type with two modes, such as the thalamic neuron. The type is not registered, see register().
+	 * @param name
+	 * @param mp_spike_threshold the membrane potential at which the neuron spikes, raised by u_spike_threshold_factor * u
+	 * @param u_spike_threshold_factor
+	 * @param mp_rest
+	 * @param mp_rest_u the membrane potential that u is measured from
+	 * @param threshold
+	 * @param reset the membrane potential after a spike, lowered by u_spike_threshold_factor * u
+	 * @param u_spike_add
+	 * @param k
+	 * @param C
+	 * @param a
+	 * @param b_1 used while the membrane potential is at most b_threshold
+	 * @param b_2 used above b_threshold
+	 * @param b_threshold
+	 * @param noise_stdv
+	 */
+	public Neuron_Type(String name, double mp_spike_threshold, double u_spike_threshold_factor, double mp_rest, double mp_rest_u, double threshold, double reset,
+			double u_spike_add, double k, double C, double a, double b_1, double b_2, double b_threshold, double noise_stdv){
+		if(!(C > 0.0)){
+			throw new IllegalArgumentException("The capacitance C of " + name + " must be positive: " + C);
+		}
+		if(noise_stdv < 0.0){
+			throw new IllegalArgumentException("The noise of " + name + " cannot be negative: " + noise_stdv);
+		}
+		_name = name;
+		_mp_spike_threshold = mp_spike_threshold;
+		_u_spike_threshold_factor = u_spike_threshold_factor;
+		_mp_rest = mp_rest;
+		_mp_rest_u = mp_rest_u;
+		_threshold = threshold;
+		_reset = reset;
+		_u_spike_add = u_spike_add;
+		_k = k;
+		_C = C;
+		_a = a;
+		_b_1 = b_1;
+		_b_2 = b_2;
+		_b_threshold = b_threshold;
+		_noise_stdv = noise_stdv;
+	}
+
+	/**
+	 * Creates a neuron type with a single mode. The type is not registered, see register().
+	 */
+	public Neuron_Type(String name, double mp_spike_threshold, double u_spike_threshold_factor, double mp_rest, double threshold, double reset,
+			double u_spike_add, double k, double C, double a, double b, double noise_stdv){
+		this(name, mp_spike_threshold, u_spike_threshold_factor, mp_rest, mp_rest, threshold, reset, u_spike_add, k, C, a, b, b, mp_rest, noise_stdv);
+	}
+
+	/**
+	 * Adds a type to the registry, replacing any type of the same name.
+	 * @param type
+	 * @return type
+	 */
+	public static Neuron_Type register(Neuron_Type type){
+		_registry.put(type._name, type);
+		return type;
+	}
+
+	/**
+	 * @param name
+	 * @return the registered type of the given name
+	 * @throws IllegalArgumentException if no type of that name is registered
+	 */
+	public static Neuron_Type get(String name){
+		Neuron_Type type = _registry.get(name);
+		if(type == null){
+			throw new IllegalArgumentException("There is no neuron type named " + name + ". Registered types: " + names());
+		}
+		return type;
+	}
+
+	/**
+	 * @return the names of the registered types in alphabetical order
+	 */
+	public static List<String> names(){
+		ArrayList<String> names = new ArrayList<String>(_registry.keySet());
+		Collections.sort(names);
+		return names;
+	}
+
+	/**
+	 * Registers every neuron type defined in a properties file. Each parameter is given as name.parameter = value, for example
+	 * <pre>
+	 * chattering.mp_spike_threshold = 25
+	 * chattering.k = 1.5
+	 * </pre>
+	 * The parameters are mp_spike_threshold, mp_rest, threshold, reset, u_spike_add, k, C and a, which are required,
+	 * either b or all of b_1, b_2 and b_threshold, and the optional u_spike_threshold_factor, mp_rest_u and noise_stdv,
+	 * which default to 0, mp_rest and 0. Units follow the built in types: mV, pF and ms.
+	 * @param file
+	 * @return the types read, in alphabetical order of name
+	 * @throws IOException
+	 * @throws IllegalArgumentException if a parameter is unknown, missing or not a number
+	 */
+	public static List<Neuron_Type> load(Path file) throws IOException{
+		Properties properties = new Properties();
+		try(Reader in = Files.newBufferedReader(file)){
+			properties.load(in);
+		}
+		TreeMap<String, HashMap<String, Double>> types = new TreeMap<String, HashMap<String, Double>>();
+		for(String key : properties.stringPropertyNames()){
+			int dot = key.indexOf('.');
+			if(dot <= 0){
+				throw new IllegalArgumentException(file + ": " + key + " is not of the form name.parameter");
+			}
+			String parameter = key.substring(dot + 1);
+			if(!_parameters.contains(parameter)){
+				throw new IllegalArgumentException(file + ": " + parameter + " is not a neuron type parameter. Parameters: " + _parameters);
+			}
+			String value = properties.getProperty(key).trim();
+			try{
+				types.computeIfAbsent(key.substring(0, dot), k -> new HashMap<String, Double>()).put(parameter, Double.parseDouble(value));
+			}
+			catch(NumberFormatException e){
+				throw new IllegalArgumentException(file + ": " + key + " is not a number: " + value);
+			}
+		}
+		ArrayList<Neuron_Type> loaded = new ArrayList<Neuron_Type>();
+		for(Map.Entry<String, HashMap<String, Double>> e : types.entrySet()){
+			loaded.add(from_parameters(e.getKey(), e.getValue()));
+		}
+		for(Neuron_Type type : loaded){
+			register(type);
+		}
+		return loaded;
+	}
+
+	private static final List<String> _parameters = Arrays.asList("mp_spike_threshold", "u_spike_threshold_factor", "mp_rest", "mp_rest_u", "threshold", "reset",
+			"u_spike_add", "k", "C", "a", "b", "b_1", "b_2", "b_threshold", "noise_stdv");
+
+	private static Neuron_Type from_parameters(String name, Map<String, Double> p){
+		boolean single = p.containsKey("b");
+		if(single && (p.containsKey("b_1") || p.containsKey("b_2") || p.containsKey("b_threshold"))){
+			throw new IllegalArgumentException(name + " gives both b and the two mode parameters b_1, b_2 and b_threshold.");
+		}
+		double mp_rest = required(name, p, "mp_rest");
+		return new Neuron_Type(name, required(name, p, "mp_spike_threshold"), p.getOrDefault("u_spike_threshold_factor", 0.0), mp_rest, p.getOrDefault("mp_rest_u", mp_rest),
+				required(name, p, "threshold"), required(name, p, "reset"), required(name, p, "u_spike_add"), required(name, p, "k"), required(name, p, "C"), required(name, p, "a"),
+				required(name, p, single ? "b" : "b_1"), required(name, p, single ? "b" : "b_2"), single ? mp_rest : required(name, p, "b_threshold"),
+				p.getOrDefault("noise_stdv", 0.0));
+	}
+
+	private static double required(String name, Map<String, Double> p, String parameter){
+		Double value = p.get(parameter);
+		if(value == null){
+			throw new IllegalArgumentException("The neuron type " + name + " is missing the parameter " + parameter + ".");
+		}
+		return value;
+	}
+
+	public String name(){
+		return _name;
+	}
+
+	public double mp_spike_threshold(){
+		return _mp_spike_threshold;
+	}
+
+	public double u_spike_threshold_factor(){
+		return _u_spike_threshold_factor;
+	}
+
+	public double mp_rest(){
+		return _mp_rest;
+	}
+
+	public double mp_rest_u(){
+		return _mp_rest_u;
+	}
+
+	public double threshold(){
+		return _threshold;
+	}
+
+	public double reset(){
+		return _reset;
+	}
+
+	public double u_spike_add(){
+		return _u_spike_add;
+	}
+
+	public double k(){
+		return _k;
+	}
+
+	public double C(){
+		return _C;
+	}
+
+	public double a(){
+		return _a;
+	}
+
+	public double b_1(){
+		return _b_1;
+	}
+
+	public double b_2(){
+		return _b_2;
+	}
+
+	public double b_threshold(){
+		return _b_threshold;
+	}
+
+	public double noise_stdv(){
+		return _noise_stdv;
+	}
+
+	public String toString(){
+		return _name;
+	}
+}
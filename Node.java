@@ -8,8 +8,9 @@ package model;
  */
 public class Node {
 	
-	protected final Double[] _output = new Double[1]; //output sent to other nodes
-	protected final Double[] _input = new Double[1]; //input from other nodes
+	protected final double[] _output = new double[1]; //output sent to other nodes
+	protected final double[] _input = new double[1]; //input from other nodes
+	protected Delay_Buffer _delay_buffer; //input sent along delayed connections, created by the first one, see raise_input_by(double, int)
 	
 	public Node(){
 		_input[0] = 0.0;
@@ -22,13 +23,41 @@ public class Node {
 	public void reset_node(){
 		_input[0] = 0.0;
 		_output[0] = 0.0;
+		if(_delay_buffer != null){
+			_delay_buffer.clear();
+		}
+	}
+	
+	/**
+	 * Creates a node of the same kind and settings as this one with its own state, used to build independent copies of a network, see Network.replicate().
+	 * Subclasses must override this method.
+	 * @return a new node in its reset state
+	 */
+	public Node replicate(){
+		if(getClass() != Node.class){
+			throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support replicate().");
+		}
+		return new Node();
 	}
 	
 	public Double input(){
+		return input_value();
+	}
+	
+	/**
+	 * The primitive versions of the getters and setters do not allocate and should be preferred in code that runs every time step.
+	 * @return the input as a primitive double
+	 */
+	public double input_value(){
 		return _input[0];
 	}
 	
 	public void set_input_to(Double d){
+		set_input_to(d.doubleValue());
+		return;
+	}
+	
+	public void set_input_to(double d){
 		_input[0] = d;
 		return;
 	}
@@ -38,11 +67,77 @@ public class Node {
 	 * @param d
 	 */
 	public void raise_input_by(Double d){
+		raise_input_by(d.doubleValue());
+		return;
+	}
+	
+	/**
+	 * Increase the input by d. To reduce the weight factor use a negative value for d.
+	 * @param d
+	 */
+	public void raise_input_by(double d){
 		_input[0] += d;
 		return;
 	}
 	
+	/**
+	 * Increase the input by d after a delay. The input arrives delay time steps after the next step of the node, so a delay of 0 is the same as raise_input_by(d).
+	 * @param d
+	 * @param delay the delay in time steps
+	 */
+	public void raise_input_by(double d, int delay){
+		if(delay == 0){
+			raise_input_by(d);
+			return;
+		}
+		if(_delay_buffer == null || delay > _delay_buffer.max_delay()){
+			ensure_delay(delay);
+		}
+		_delay_buffer.add(0, delay, d);
+		return;
+	}
+	
+	/**
+	 * Makes room for input delayed by up to max_delay time steps. Delayed connections call this when their delay is set,
+	 * so that no storage is allocated while the network runs.
+	 * @param max_delay
+	 */
+	public void ensure_delay(int max_delay){
+		if(_delay_buffer == null){
+			_delay_buffer = new Delay_Buffer(1, max_delay);
+		}
+		else{
+			_delay_buffer.ensure_delay(max_delay);
+		}
+		return;
+	}
+	
+	/**
+	 * @return the buffer holding the delayed input of this node, or null if no delayed connection has targeted it.
+	 */
+	Delay_Buffer delay_buffer(){
+		return _delay_buffer;
+	}
+	
+	/**
+	 * Adds the delayed input that arrives in this time step to the input. Called at the start of step().
+	 */
+	protected final void take_delayed_input(){
+		if(_delay_buffer != null){
+			_delay_buffer.advance();
+			_input[0] += _delay_buffer.take(0);
+		}
+		return;
+	}
+	
 	public Double output(){
+		return output_value();
+	}
+	
+	/**
+	 * @return the output as a primitive double
+	 */
+	public double output_value(){
 		return _output[0];
 	}
 	
@@ -50,11 +145,17 @@ public class Node {
 	 * This method advances the node by a single time step.
 	 */
 	public void step(){
+		take_delayed_input();
 		_output[0] = _input[0];
 		return;
 	}
 	
 	public void set_output(Double d){
+		set_output(d.doubleValue());
+		return;
+	}
+	
+	public void set_output(double d){
 		_output[0] = d;
 		return;
 	}
@@ -0,0 +1,28 @@
+package model;
+
+/**
+ * A counter based source of Gaussian noise. The noise of neuron i at time step t is a fixed function of (seed, t, i), so it does not depend on the order
+ * in which neurons are stepped or on how a population is split between threads. A run is reproduced by reusing its seed.
+ * @author Scaed
+ *
+ */
+public final class Noise_Source {
+
+	private static final double _unit = 0x1.0p-53;
+
+	private Noise_Source(){
+	}
+
+	/**
+	 * @param seed
+	 * @param t the time step
+	 * @param i the index of the neuron
+	 * @return a standard Gaussian value drawn with the Box-Muller transform from two uniforms made by hashing the counter.
+	 */
+	public static double gaussian(long seed, long t, int i){
+		long key = Connectivity.mix(seed + 0x9E3779B97F4A7C15L * t) + 0xD1B54A32D192ED03L * (i + 1);
+		double u_1 = ((Connectivity.mix(key) >>> 11) + 1) * _unit; //in (0, 1] so the log is finite
+		double u_2 = (Connectivity.mix(key + 0x9E3779B97F4A7C15L) >>> 11) * _unit;
+		return Math.sqrt(-2.0 * Math.log(u_1)) * Math.cos(2.0 * Math.PI * u_2);
+	}
+}
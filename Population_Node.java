@@ -0,0 +1,147 @@
+package model;
+
+/**
+ * A lightweight view of a single neuron of a Spiking_Population. The state of the neuron is kept by the population; every getter and setter reads or writes its columns.
+ * The view has no spike history or noise stream of its own and draws no noise seed, though like every Node it carries a few unused size 1 arrays.
+ * This allows existing Node based code, such as Synaptic_Connection and Presynaptic_Connection, to connect to neurons of a population.
+ * The neurons of a population are advanced together using Spiking_Population.step_all() and so a view cannot be stepped on its own.
+ * @author Scaed
+ *
+ */
+public class Population_Node extends Spiking_Node {
+
+	private final Spiking_Population _population;
+	private final int _index;
+
+	Population_Node(Spiking_Population population, int index){
+		super(population);
+		_population = population;
+		_index = index;
+	}
+
+	/**
+	 * A view is replicated along with its population, see Spiking_Population.replicate().
+	 */
+	public Population_Node replicate(){
+		throw new UnsupportedOperationException("A Population_Node is replicated with its population, see Spiking_Population.replicate().");
+	}
+
+	public Spiking_Population get_population(){
+		return _population;
+	}
+
+	public int get_index(){
+		return _index;
+	}
+
+	public double input_value(){
+		return _population.input(_index);
+	}
+
+	public void set_input_to(double d){
+		_population.set_input_to(_index, d);
+		return;
+	}
+
+	public void raise_input_by(double d){
+		_population.raise_input_by(_index, d);
+		return;
+	}
+
+	public void raise_input_by(double d, int delay){
+		_population.raise_input_by(_index, d, delay);
+		return;
+	}
+
+	/**
+	 * The delayed input of every neuron of a population is kept in one buffer owned by the population.
+	 */
+	public void ensure_delay(int max_delay){
+		_population.ensure_delay(max_delay);
+		return;
+	}
+
+	public double glut_output_value(){
+		return _population.glut_output(_index);
+	}
+
+	public double gaba_output_value(){
+		return _population.gaba_output(_index);
+	}
+
+	public double membrane_potential_value(){
+		return _population.membrane_potential(_index);
+	}
+
+	/**
+	 * A view cannot be advanced on its own as all the neurons of a population share one clock. Use Spiking_Population.step_all() instead.
+	 */
+	public void step(){
+		System.out.println("Alert! Your model is stepping a single neuron of a Spiking_Population. The neurons of a population must be advanced together using Spiking_Population.step_all().");
+		return;
+	}
+
+	/**
+	 * Resets the viewed neuron. The clock is shared by the whole population and so is left unchanged.
+	 */
+	public void reset_node(){
+		_population.reset_neuron(_index);
+	}
+
+	public void DEBUG_set_glut_output(double d){
+		_population.DEBUG_set_glut_output(_index, d);
+		return;
+	}
+
+	public void DEBUG_set_gaba_output(double d){
+		_population.DEBUG_set_gaba_output(_index, d);
+		return;
+	}
+
+	public boolean did_spike(){
+		return _population.did_spike(_index);
+	}
+
+	public Spike_History spike_history(){
+		return _population.spike_history(_index);
+	}
+
+	protected int spike_horizon(){
+		return _population.spike_horizon();
+	}
+
+	/**
+	 * The noise of a neuron of a population is drawn from the stream of the population, see Spiking_Population.set_noise_seed(), so this does nothing.
+	 */
+	public void set_noise_seed(long seed){
+		return;
+	}
+
+	/**
+	 * The kernels are shared by every neuron of a population and so this sets them for the whole population.
+	 */
+	public void set_kernels(Kernel_Table glut_kernel, Kernel_Table gaba_kernel){
+		_population.set_kernels(glut_kernel, gaba_kernel);
+		return;
+	}
+
+	public Kernel_Table glut_kernel(){
+		return _population.glut_kernel();
+	}
+
+	public Kernel_Table gaba_kernel(){
+		return _population.gaba_kernel();
+	}
+
+	/**
+	 * The output mode is shared by every neuron of a population and so this sets it for the whole population.
+	 */
+	public void set_recursive_output(boolean recursive){
+		_population.set_recursive_output(recursive);
+		return;
+	}
+
+	public boolean recursive_output(){
+		return _population.recursive_output();
+	}
+}
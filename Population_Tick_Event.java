@@ -0,0 +1,39 @@
+package model;
+
+import jdk.jfr.*;
+
+/**
+ * A JDK Flight Recorder event committed by Network.step() for every population of the network at every time step while the event is enabled in a recording.
+ * It is disabled by default as it scans every neuron of the population.
+ * @author Scaed
+ *
+ */
+@Name("model.PopulationTick")
+@Label("Population Tick")
+@Category("Neuron Network")
+@Description("Spikes and spike history size of one population in one time step")
+@StackTrace(false)
+@Enabled(false)
+public class Population_Tick_Event extends Event {
+
+	private static final EventType _type = EventType.getEventType(Population_Tick_Event.class);
+
+	@Label("Time Step")
+	public int tick;
+
+	@Label("Population")
+	public int population; //index into Network.get_populations(), followed by the float populations
+
+	@Label("Neurons")
+	public int size;
+
+	@Label("Spikes")
+	public int spikes;
+
+	@Label("Mean Spike History Size")
+	public double mean_spike_history;
+
+	static boolean enabled(){
+		return _type.isEnabled();
+	}
+}
@@ -0,0 +1,182 @@
+package tasks;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+import model.*;
+
+/**
+ * Runs the same seeded network in double precision and in single precision side by side and reports how far the spike trains of the two drift apart,
+ * to decide whether Float_Population is accurate enough for a given use.
+ * The network is a thalamic population driving pyramidal and striatal populations, with the striatal population inhibiting a tonically active GP population
+ * that in turn inhibits the thalamus. The pyramidal neurons are noisy; both networks draw the same noise, so the only difference between them is rounding.
+ * For every population the spike counts, firing rates and relative rate divergence are reported, together with the fraction of double precision spikes
+ * that the float run reproduces at exactly the same time step and within the given tolerance, and the first time step at which any spike differs.
+ * The results are printed and written as JSON and CSV.
+ * Usage: Precision_Validation [ticks] [neurons per population] [tolerance in time steps] [output file prefix]
+ * @author Scaed
+ *
+ */
+public class Precision_Validation {
+
+	private static final Neuron_Type[] _types = {Neuron_Type.THALAMIC, Neuron_Type.PYRAMIDAL, Neuron_Type.STRIATAL, Neuron_Type.GP};
+	private static final double[] _drive = {60.0, 40.0, 0.0, 100.0}; //mean input of each population, varied by +-50% across its neurons
+	private static final int[][] _projections = {{0, 1}, {0, 2}, {1, 2}, {2, 3}, {3, 0}}; //source and target of each projection, indices into _types
+	private static final double[] _total_weight = {100.0, 200.0, 200.0, -200.0, -20.0}; //summed over the synapses a neuron receives through each projection
+	private static final double _prob = 0.1;
+
+	public static void main(String[] args) throws IOException{
+		int ticks = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+		int size = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+		int tolerance = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+		String prefix = args.length > 3 ? args[3] : "precision";
+
+		List<Map<String, Object>> results = run(size, ticks, tolerance, 1);
+		for(Map<String, Object> result : results){
+			System.out.println(result);
+		}
+		Scaling_Benchmark.write_json(results, Paths.get(prefix + ".json"));
+		Scaling_Benchmark.write_csv(results, Paths.get(prefix + ".csv"));
+		return;
+	}
+
+	/**
+	 * Builds the network twice, once from Spiking_Population and once from Float_Population, runs both in lock step and compares their spikes.
+	 * @param size the number of neurons in each population
+	 * @param ticks the number of time steps to run, 1 ms each
+	 * @param tolerance spikes of the float run this many time steps or less from a double precision spike count as matched
+	 * @param seed the seed of the connectivity and of the noise
+	 * @return one result per population, in the order thalamic, pyramidal, striatal, GP
+	 */
+	public static List<Map<String, Object>> run(int size, int ticks, int tolerance, long seed){
+		Network double_network = new Network();
+		Network float_network = new Network();
+		Spiking_Population[] doubles = new Spiking_Population[_types.length];
+		Float_Population[] floats = new Float_Population[_types.length];
+		for(int p = 0; p < _types.length; p++){
+			doubles[p] = Spiking_Population.of(_types[p], size);
+			floats[p] = Float_Population.of(_types[p], size);
+			doubles[p].set_vectorized(true);
+			floats[p].set_vectorized(true);
+			double_network.add_population(doubles[p]);
+			float_network.add_population(floats[p]);
+		}
+		for(int k = 0; k < _projections.length; k++){
+			int src = _projections[k][0];
+			int tgt = _projections[k][1];
+			double mean = _total_weight[k] / (size * _prob); //the total weight a neuron receives is the same at every size
+			Projection projection = Projection.random(doubles[src], doubles[tgt], mean, Math.abs(mean) / 5, _prob, seed + k);
+			double_network.add_projection(projection);
+			float_network.add_projection(Float_Projection.of(projection, floats[src], floats[tgt]));
+		}
+		double_network.set_event_driven(true);
+		double_network.set_noise_seed(seed);
+		float_network.set_noise_seed(seed);
+
+		int[][][] double_spikes = new int[_types.length][size][];
+		int[][][] float_spikes = new int[_types.length][size][];
+		int[][] double_count = new int[_types.length][size];
+		int[][] float_count = new int[_types.length][size];
+		int[] first_divergence = new int[_types.length];
+		Arrays.fill(first_divergence, -1);
+		for(int p = 0; p < _types.length; p++){
+			for(int i = 0; i < size; i++){
+				double_spikes[p][i] = new int[16];
+				float_spikes[p][i] = new int[16];
+			}
+		}
+
+		for(int t = 1; t <= ticks; t++){
+			for(int p = 0; p < _types.length; p++){
+				if(_drive[p] == 0.0){
+					continue;
+				}
+				for(int i = 0; i < size; i++){
+					double drive = _drive[p] * (0.5 + (double)i / size);
+					doubles[p].raise_input_by(i, drive);
+					floats[p].raise_input_by(i, drive);
+				}
+			}
+			double_network.step();
+			float_network.step();
+			for(int p = 0; p < _types.length; p++){
+				for(int i = 0; i < size; i++){
+					boolean d = doubles[p].did_spike(i);
+					boolean f = floats[p].did_spike(i);
+					if(d){
+						double_spikes[p][i] = append(double_spikes[p][i], double_count[p][i]++, t);
+					}
+					if(f){
+						float_spikes[p][i] = append(float_spikes[p][i], float_count[p][i]++, t);
+					}
+					if(d != f && first_divergence[p] < 0){
+						first_divergence[p] = t;
+					}
+				}
+			}
+		}
+
+		ArrayList<Map<String, Object>> results = new ArrayList<Map<String, Object>>();
+		double seconds = ticks / 1000.0;
+		for(int p = 0; p < _types.length; p++){
+			long spikes_double = 0;
+			long spikes_float = 0;
+			long exact = 0;
+			long close = 0;
+			for(int i = 0; i < size; i++){
+				spikes_double += double_count[p][i];
+				spikes_float += float_count[p][i];
+				exact += matched(double_spikes[p][i], double_count[p][i], float_spikes[p][i], float_count[p][i], 0);
+				close += matched(double_spikes[p][i], double_count[p][i], float_spikes[p][i], float_count[p][i], tolerance);
+			}
+			double rate_double = spikes_double / (size * seconds);
+			double rate_float = spikes_float / (size * seconds);
+			LinkedHashMap<String, Object> result = new LinkedHashMap<String, Object>();
+			result.put("population", _types[p].name());
+			result.put("neurons", size);
+			result.put("ticks", ticks);
+			result.put("spikes_double", spikes_double);
+			result.put("spikes_float", spikes_float);
+			result.put("rate_double_hz", round(rate_double));
+			result.put("rate_float_hz", round(rate_float));
+			result.put("rate_divergence", round(rate_double == 0.0 ? (rate_float == 0.0 ? 0.0 : 1.0) : Math.abs(rate_float - rate_double) / rate_double));
+			result.put("matched_exact", round(spikes_double == 0 ? 1.0 : (double)exact / spikes_double));
+			result.put("matched_within_" + tolerance, round(spikes_double == 0 ? 1.0 : (double)close / spikes_double));
+			result.put("first_divergence", first_divergence[p]);
+			results.add(result);
+		}
+		return results;
+	}
+
+	private static int[] append(int[] times, int count, int t){
+		if(count == times.length){
+			times = Arrays.copyOf(times, count * 2);
+		}
+		times[count] = t;
+		return times;
+	}
+
+	/**
+	 * Pairs the spikes of two increasing spike trains greedily in time order, each spike being used at most once.
+	 * @return the number of spikes of a paired with a spike of b at most tolerance time steps away
+	 */
+	private static int matched(int[] a, int a_count, int[] b, int b_count, int tolerance){
+		int matched = 0;
+		int j = 0;
+		for(int i = 0; i < a_count; i++){
+			while(j < b_count && b[j] < a[i] - tolerance){
+				j++;
+			}
+			if(j < b_count && b[j] <= a[i] + tolerance){
+				matched++;
+				j++;
+			}
+		}
+		return matched;
+	}
+
+	private static double round(double v){
+		return Math.round(v * 1e6) / 1e6;
+	}
+}
@@ -21,6 +21,18 @@ public class Presynaptic_Connection extends Connection{
 		_prev_signal_sent[0] = 0.0;
 	}
 	
+	/**
+	 * Creates a connection between src and rcv that shares the weight of this one, see Network.replicate().
+	 * @param src
+	 * @param rcv
+	 * @return the new connection
+	 */
+	public Presynaptic_Connection replicate(Node src, Connection rcv){
+		Presynaptic_Connection c = new Presynaptic_Connection(src, rcv, _weight[0]);
+		c.share_weight_with(this);
+		return c;
+	}
+	
 	/**
 	 * There is no set() method for the receiver as it should not be changed once assigned in the constructor method.
 	 * @return
@@ -38,14 +50,14 @@ public class Presynaptic_Connection extends Connection{
 		double signal;
 		if(_source instanceof Spiking_Node){
 			if(_weight[0] < 0){
-				signal = ((Spiking_Node)_source).gaba_output();
+				signal = ((Spiking_Node)_source).gaba_output_value();
 			}
 			else{
-				signal = ((Spiking_Node)_source).glut_output();
+				signal = ((Spiking_Node)_source).glut_output_value();
 			}
 		}
 		else{
-			signal = _source.output();
+			signal = _source.output_value();
 		}
 		
 		signal += _presynaptc_input[0];
@@ -61,8 +73,8 @@ public class Presynaptic_Connection extends Connection{
 	}
 	
 	/**
-	 * This is a static function that probabilistically creates a set of Presynaptic_Connections between a group of source nodes and a group of receiver Connections
-	 * with the weight drawn from a Gaussian distribution of chosen mean and standard deviation. 
+	 * This is a static function that probabilistically creates a set of Presynaptic_Connections between a group of source nodes and a group of receiver connections
+	 * with the weight drawn from a Gaussian distribution of chosen mean and standard deviation. A new random seed is used on every call.
 	 * @param sources the group of source nodes
 	 * @param receivers the group of receiver connections
 	 * @param mean the mean weight of the connections created
@@ -71,17 +83,28 @@ public class Presynaptic_Connection extends Connection{
 	 * @return an array of new connections between sources and receivers
 	 */
 	public static Presynaptic_Connection[] connect(Node[] sources, Connection[] recievers, double mean, double stdv, double prob){
+		return connect(sources, recievers, mean, stdv, prob, new Random().nextLong());
+	}
+	
+	/**
+	 * As connect() above, but reproducible: the same seed always creates the same connections. Only the connections that are created are sampled, see Connectivity.
+	 * @param sources the group of source nodes
+	 * @param receivers the group of receiver connections
+	 * @param mean the mean weight of the connections created
+	 * @param stdv the standard deviation of the connections created
+	 * @param prob the probability that connection will be created between a given source/receiver pair  
+	 * @param seed
+	 * @return an array of new connections between sources and receivers
+	 */
+	public static Presynaptic_Connection[] connect(Node[] sources, Connection[] recievers, double mean, double stdv, double prob, long seed){
 		ArrayList<Presynaptic_Connection> cons = new ArrayList<Presynaptic_Connection>();
-		Random rng = new Random();
-		for(Node s : sources){
-			for(Connection r : recievers){
-				if(rng.nextDouble() < prob){
-					double weight = (rng.nextGaussian() + mean) * stdv;
-					cons.add(new Presynaptic_Connection(s, r, weight));
-				}
+		for(int i = 0; i < sources.length; i++){
+			SplittableRandom rng = Connectivity.row_rng(seed, i);
+			for(long r = Connectivity.next(rng, -1, prob); r < recievers.length; r = Connectivity.next(rng, r, prob)){
+				double weight = Connectivity.weight(rng, mean, stdv);
+				cons.add(new Presynaptic_Connection(sources[i], recievers[(int)r], weight));
 			}
 		}
-		Presynaptic_Connection[] out = (Presynaptic_Connection[]) cons.toArray();
-		return out;
+		return cons.toArray(new Presynaptic_Connection[cons.size()]);
 	}
 }
@@ -0,0 +1,157 @@
+package model;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Delivers a set of Presynaptic_Connections in an order that respects their dependencies.
+ * A presynaptic connection adds to the presynaptic input of its receiver, which the receiver reads and clears when it is sent.
+ * When the receiver is itself a presynaptic connection of the set, the sender must be sent first. The dispatcher builds this Connection to Connection graph once,
+ * rejects cycles, and groups the connections into levels by depth: level 0 holds the connections that receive no presynaptic input from the set,
+ * level 1 those that only receive input from level 0, and so on. Each level is a batch whose connections do not depend on each other.
+ * Within a level, connections are grouped by receiver so that each receiver is written by one task when a level is dispatched in parallel,
+ * adding its inputs in the same order as dispatch() does.
+ * @author Scaed
+ *
+ */
+public class Presynaptic_Dispatcher {
+
+	private final Presynaptic_Connection[][][] _levels; //level, receiver group, connection
+	private int _task_chunks = 0;
+	private ArrayList<ArrayList<Callable<Object>>> _level_tasks;
+
+	/**
+	 * @param connections the presynaptic connections to deliver, listed in the order they should be delivered when they are otherwise independent
+	 * @throws IllegalArgumentException if the connections contain a cycle, in which case no order can deliver them correctly
+	 */
+	public Presynaptic_Dispatcher(Presynaptic_Connection[] connections){
+		IdentityHashMap<Connection, Integer> index = new IdentityHashMap<Connection, Integer>();
+		for(int i = 0; i < connections.length; i++){
+			index.put(connections[i], i);
+		}
+		int[] pending = new int[connections.length]; //number of senders in the set that have not been given a level yet
+		for(Presynaptic_Connection c : connections){
+			Integer r = index.get(c.get_reciever());
+			if(r != null){
+				pending[r]++;
+			}
+		}
+
+		int[] level = new int[connections.length];
+		ArrayDeque<Integer> ready = new ArrayDeque<Integer>();
+		for(int i = 0; i < connections.length; i++){
+			if(pending[i] == 0){
+				ready.add(i);
+			}
+		}
+		int placed = 0;
+		int depth = 0;
+		while(!ready.isEmpty()){
+			int i = ready.poll();
+			placed++;
+			depth = Math.max(depth, level[i] + 1);
+			Integer r = index.get(connections[i].get_reciever());
+			if(r != null){
+				level[r] = Math.max(level[r], level[i] + 1);
+				if(--pending[r] == 0){
+					ready.add(r);
+				}
+			}
+		}
+		//The receiver of a connection is fixed when it is constructed, which rules out cycles between the connection classes of this package, but not between subclasses
+		if(placed < connections.length){
+			throw new IllegalArgumentException("The presynaptic connections contain a cycle, so there is no order in which they can be sent.");
+		}
+
+		ArrayList<LinkedHashMap<Connection, ArrayList<Presynaptic_Connection>>> levels = new ArrayList<LinkedHashMap<Connection, ArrayList<Presynaptic_Connection>>>();
+		for(int l = 0; l < depth; l++){
+			levels.add(new LinkedHashMap<Connection, ArrayList<Presynaptic_Connection>>());
+		}
+		for(int i = 0; i < connections.length; i++){
+			levels.get(level[i]).computeIfAbsent(connections[i].get_reciever(), k -> new ArrayList<Presynaptic_Connection>()).add(connections[i]);
+		}
+		_levels = new Presynaptic_Connection[depth][][];
+		for(int l = 0; l < depth; l++){
+			_levels[l] = new Presynaptic_Connection[levels.get(l).size()][];
+			int g = 0;
+			for(ArrayList<Presynaptic_Connection> group : levels.get(l).values()){
+				_levels[l][g++] = group.toArray(new Presynaptic_Connection[group.size()]);
+			}
+		}
+	}
+
+	/**
+	 * @return the number of levels, which is the length of the longest chain of presynaptic connections.
+	 */
+	public int level_count(){
+		return _levels.length;
+	}
+
+	/**
+	 * @param l
+	 * @return the connections of level l
+	 */
+	public Presynaptic_Connection[] get_level(int l){
+		ArrayList<Presynaptic_Connection> out = new ArrayList<Presynaptic_Connection>();
+		for(Presynaptic_Connection[] group : _levels[l]){
+			out.addAll(Arrays.asList(group));
+		}
+		return out.toArray(new Presynaptic_Connection[out.size()]);
+	}
+
+	/**
+	 * Sends every connection, level by level, in the calling thread.
+	 */
+	public void dispatch(){
+		for(Presynaptic_Connection[][] level : _levels){
+			for(Presynaptic_Connection[] group : level){
+				for(Presynaptic_Connection c : group){
+					c.send();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Sends every connection, level by level, with the receiver groups of each level split into tasks that run on the pool.
+	 * Every level finishes before the next one starts. The result is bit-identical to dispatch().
+	 * @param pool
+	 * @param chunks the number of tasks each level is split into
+	 */
+	public void dispatch(ExecutorService pool, int chunks){
+		if(_level_tasks == null || _task_chunks != chunks){
+			build_tasks(chunks);
+		}
+		for(ArrayList<Callable<Object>> tasks : _level_tasks){
+			Network.run_tasks(pool, tasks);
+		}
+	}
+
+	private void build_tasks(int chunks){
+		_level_tasks = new ArrayList<ArrayList<Callable<Object>>>();
+		for(Presynaptic_Connection[][] level : _levels){
+			int total = 0;
+			for(Presynaptic_Connection[] group : level){
+				total += group.length;
+			}
+			int target = Math.max(1, (total + chunks - 1) / chunks);
+			ArrayList<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+			ArrayList<Presynaptic_Connection> chunk = new ArrayList<Presynaptic_Connection>();
+			for(int g = 0; g < level.length; g++){
+				chunk.addAll(Arrays.asList(level[g]));
+				if(chunk.size() >= target || g == level.length - 1){
+					final Presynaptic_Connection[] connections = chunk.toArray(new Presynaptic_Connection[chunk.size()]);
+					tasks.add(() -> {
+						for(Presynaptic_Connection c : connections){
+							c.send();
+						}
+						return null;
+					});
+					chunk = new ArrayList<Presynaptic_Connection>();
+				}
+			}
+			_level_tasks.add(tasks);
+		}
+		_task_chunks = chunks;
+	}
+}
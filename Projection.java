@@ -0,0 +1,465 @@
+package model;
+
+import java.util.*;
+import java.util.stream.*;
+
+/**
+ * A compact store for all the synaptic connections from one Spiking_Population to another, in compressed sparse row form.
+ * Rather than one Synaptic_Connection object per synapse, the synapses are kept in primitive arrays grouped by source neuron:
+ * the outgoing synapses of source i are the entries _row_start[i] to _row_start[i + 1] - 1 of _target_index and _weight.
+ * Delivering the output of a source is a single linear scan of its row. As in Synaptic_Connection.send(), the GABA output of the source is sent through
+ * synapses with a negative weight and the glutamate output through the others.
+ * Synapses can have axonal delays, see set_delay(). Delayed signals wait in the delay buffer of the target population.
+ * Presynaptic input is not supported; synapses that receive Presynaptic_Connections should be made with Synaptic_Connection between population views.
+ * @author Scaed
+ *
+ */
+public class Projection {
+
+	protected final Spiking_Population _source;
+	protected final Spiking_Population _target;
+	protected final int[] _row_start;
+	protected final int[] _target_index;
+	protected final double[] _weight;
+	protected short[] _delay; //axonal delay of each synapse in time steps, null while every delay is 0
+
+	private volatile int[] _col_start; //synapses grouped by target, built only when needed for parallel delivery
+	private int[] _col_synapse;
+	private int[] _col_source;
+
+	/**
+	 * Creates a projection from a list of synapses. Synapse k connects neuron sources[k] of src to neuron targets[k] of tgt with weight weights[k].
+	 * The synapses of each source are sorted by target, with synapses onto the same target kept in the order they are listed, see sort_rows().
+	 * Synapse indices such as those of get_weight() therefore follow the sorted order rather than the order of the arguments.
+	 * @param src
+	 * @param tgt
+	 * @param sources
+	 * @param targets
+	 * @param weights
+	 */
+	public Projection(Spiking_Population src, Spiking_Population tgt, int[] sources, int[] targets, double[] weights){
+		_source = src;
+		_target = tgt;
+		_row_start = new int[src.size() + 1];
+		_target_index = new int[sources.length];
+		_weight = new double[sources.length];
+		for(int k = 0; k < sources.length; k++){
+			_row_start[sources[k] + 1]++;
+		}
+		for(int i = 0; i < src.size(); i++){
+			_row_start[i + 1] += _row_start[i];
+		}
+		int[] next = new int[src.size()];
+		for(int k = 0; k < sources.length; k++){
+			int slot = _row_start[sources[k]] + next[sources[k]]++;
+			_target_index[slot] = targets[k];
+			_weight[slot] = weights[k];
+		}
+		sort_rows();
+	}
+
+	/**
+	 * Sorts the synapses of each row by target. The sort is stable, so every target still receives its inputs in the same order,
+	 * but the synapses of a row into a range of targets can then be found with a binary search.
+	 */
+	private void sort_rows(){
+		for(int i = 0; i < _row_start.length - 1; i++){
+			int start = _row_start[i];
+			int end = _row_start[i + 1];
+			boolean sorted = true;
+			for(int k = start + 1; k < end && sorted; k++){
+				sorted = _target_index[k - 1] <= _target_index[k];
+			}
+			if(sorted){
+				continue;
+			}
+			long[] keys = new long[end - start];
+			for(int k = start; k < end; k++){
+				keys[k - start] = ((long)_target_index[k] << 32) | (k - start);
+			}
+			Arrays.sort(keys);
+			int[] targets = Arrays.copyOfRange(_target_index, start, end);
+			double[] weights = Arrays.copyOfRange(_weight, start, end);
+			for(int k = 0; k < keys.length; k++){
+				int from = (int)(keys[k] & 0xFFFFFFFFL);
+				_target_index[start + k] = targets[from];
+				_weight[start + k] = weights[from];
+			}
+		}
+	}
+
+	private Projection(int[] row_start, int[] target_index, double[] weight, Spiking_Population src, Spiking_Population tgt){
+		_source = src;
+		_target = tgt;
+		_row_start = row_start;
+		_target_index = target_index;
+		_weight = weight;
+	}
+
+	/**
+	 * Creates a projection directly from arrays already in compressed sparse row form. The arrays are used, not copied.
+	 */
+	static Projection from_rows(Spiking_Population src, Spiking_Population tgt, int[] row_start, int[] target_index, double[] weight){
+		return new Projection(row_start, target_index, weight, src, tgt);
+	}
+
+	/**
+	 * Probabilistically creates a projection from src to tgt with the weight drawn from a Gaussian distribution of chosen mean and standard deviation.
+	 * Only the synapses that exist are sampled, see Connectivity, and blocks of source rows are generated in parallel. The same seed always gives the same projection.
+	 * @param src
+	 * @param tgt
+	 * @param mean the mean weight of the synapses created
+	 * @param stdv the standard deviation of the synapses created
+	 * @param prob the probability that a synapse will be created between a given source/target pair
+	 * @param seed
+	 * @return a new projection from src to tgt
+	 */
+	public static Projection random(Spiking_Population src, Spiking_Population tgt, double mean, double stdv, double prob, long seed){
+		final int rows = src.size();
+		final int columns = tgt.size();
+		final int block_size = 4096;
+		final int blocks = (rows + block_size - 1) / block_size;
+		final int[][] block_targets = new int[blocks][];
+		final double[][] block_weights = new double[blocks][];
+		final int[] row_count = new int[rows];
+		IntStream.range(0, blocks).parallel().forEach(b -> {
+			int expected = (int)Math.min(Integer.MAX_VALUE - 8, (long)Math.ceil(block_size * (double)columns * prob * 1.1) + 16);
+			int[] targets = new int[expected];
+			double[] weights = new double[expected];
+			int n = 0;
+			for(int i = b * block_size; i < Math.min(rows, (b + 1) * block_size); i++){
+				SplittableRandom rng = Connectivity.row_rng(seed, i);
+				for(long j = Connectivity.next(rng, -1, prob); j < columns; j = Connectivity.next(rng, j, prob)){
+					if(n == targets.length){
+						targets = Arrays.copyOf(targets, n * 2);
+						weights = Arrays.copyOf(weights, n * 2);
+					}
+					targets[n] = (int)j;
+					weights[n] = Connectivity.weight(rng, mean, stdv);
+					n++;
+					row_count[i]++;
+				}
+			}
+			block_targets[b] = Arrays.copyOf(targets, n);
+			block_weights[b] = Arrays.copyOf(weights, n);
+		});
+
+		int[] row_start = new int[rows + 1];
+		for(int i = 0; i < rows; i++){
+			row_start[i + 1] = row_start[i] + row_count[i];
+		}
+		int[] target_index = new int[row_start[rows]];
+		double[] weight = new double[row_start[rows]];
+		for(int b = 0; b < blocks; b++){
+			int offset = row_start[b * block_size];
+			System.arraycopy(block_targets[b], 0, target_index, offset, block_targets[b].length);
+			System.arraycopy(block_weights[b], 0, weight, offset, block_weights[b].length);
+		}
+		return from_rows(src, tgt, row_start, target_index, weight);
+	}
+
+	/**
+	 * Creates a projection between src and tgt that shares the synapses and weights of this one, see Network.replicate().
+	 * The delays are copied, as the delay buffer of each target is sized for the delays of its own projections, so set_delay() only changes the projection it is called on.
+	 * @param src a population of the same size as the source of this projection
+	 * @param tgt a population of the same size as the target of this projection
+	 * @return the new projection
+	 */
+	public Projection replicate(Spiking_Population src, Spiking_Population tgt){
+		if(src.size() != _source.size() || tgt.size() != _target.size()){
+			throw new IllegalArgumentException("A projection can only be replicated between populations of the same sizes.");
+		}
+		Projection p = from_rows(src, tgt, _row_start, _target_index, _weight);
+		if(_col_start != null){
+			p._col_synapse = _col_synapse;
+			p._col_source = _col_source;
+			p._col_start = _col_start;
+		}
+		if(_delay != null){
+			p._delay = _delay.clone();
+			tgt.ensure_delay(max_delay());
+		}
+		return p;
+	}
+
+	public Spiking_Population get_source(){
+		return _source;
+	}
+
+	/**
+	 * There is no set() method for the target as it should not be changed once assigned in the constructor method.
+	 * @return
+	 */
+	public Spiking_Population get_target(){
+		return _target;
+	}
+
+	public int synapse_count(){
+		return _weight.length;
+	}
+
+	/**
+	 * @param i
+	 * @return the index of the first outgoing synapse of source neuron i. The outgoing synapses of i end at row_start(i + 1).
+	 */
+	public int row_start(int i){
+		return _row_start[i];
+	}
+
+	public int target_of(int k){
+		return _target_index[k];
+	}
+
+	public double get_weight(int k){
+		return _weight[k];
+	}
+
+	public void set_weight(int k, double wgt){
+		_weight[k] = wgt;
+		return;
+	}
+
+	/**
+	 * Sets the axonal delay of every synapse. A signal sent with delay d reaches its target d time steps later than it would without one.
+	 * STDP_Plasticity does not take delays into account: it pairs the spikes of the source and target at the times they happen, not when the signal arrives.
+	 * @param delay the delay in time steps, at most Short.MAX_VALUE
+	 */
+	public void set_delay(int delay){
+		check_delay(delay);
+		if(delay == 0 && _delay == null){
+			return;
+		}
+		if(_delay == null){
+			_delay = new short[_weight.length];
+		}
+		Arrays.fill(_delay, (short)delay);
+		_target.ensure_delay(delay);
+		return;
+	}
+
+	/**
+	 * Sets the axonal delay of synapse k. Delays cost 2 bytes per synapse once any synapse has one,
+	 * while the delayed signals are held by the target population in a buffer of (max_delay + 1) values per neuron.
+	 * @param k
+	 * @param delay the delay in time steps, at most Short.MAX_VALUE
+	 */
+	public void set_delay(int k, int delay){
+		check_delay(delay);
+		if(delay == 0 && _delay == null){
+			return;
+		}
+		if(_delay == null){
+			_delay = new short[_weight.length];
+		}
+		_delay[k] = (short)delay;
+		_target.ensure_delay(delay);
+		return;
+	}
+
+	public int get_delay(int k){
+		return (_delay == null) ? 0 : _delay[k];
+	}
+
+	/**
+	 * @return the longest delay of any synapse of the projection.
+	 */
+	public int max_delay(){
+		int max = 0;
+		if(_delay != null){
+			for(short d : _delay){
+				max = Math.max(max, d);
+			}
+		}
+		return max;
+	}
+
+	private static void check_delay(int delay){
+		if(delay < 0 || delay > Short.MAX_VALUE){
+			throw new IllegalArgumentException("A delay must be between 0 and " + Short.MAX_VALUE + ": " + delay);
+		}
+	}
+
+	/**
+	 * This method advances the projection by one time step, delivering the output of every source neuron to the input of its targets.
+	 */
+	public void deliver(){
+		for(int i = 0; i < _source._size; i++){
+			deliver_row(i);
+		}
+	}
+
+	/**
+	 * Delivers the output of source neuron i through its outgoing synapses. The signal is chosen by the sign of each weight as in Synaptic_Connection.send().
+	 * @param i
+	 */
+	public void deliver_row(int i){
+		final double glut = _source._glut_output[i];
+		final double gaba = _source._gaba_output[i];
+		final double[] input = _target._input;
+		final short[] delay = _delay;
+		if((glut > 0.0 || gaba > 0.0) && _row_start[i] < _row_start[i + 1]){
+			_target._input_touched = true;
+		}
+		for(int k = _row_start[i]; k < _row_start[i + 1]; k++){
+			double w = _weight[k];
+			double signal = (w < 0) ? gaba : glut;
+			if(signal < 0.0){
+				signal = 0.0;
+			}
+			if(delay == null || delay[k] == 0){
+				input[_target_index[k]] += signal * w;
+			}
+			else{
+				_target.delay_buffer().add(_target_index[k], delay[k], signal * w);
+			}
+		}
+	}
+
+	/**
+	 * Event driven version of deliver(). Only the rows of the source neurons found by Spiking_Population.update_active_sources() are scanned.
+	 * Silent sources would only add 0 to their targets, so the result is the same as deliver() while the work scales with activity rather than synapse count.
+	 */
+	public void deliver_active(){
+		for(int a = 0; a < _source.active_source_count(); a++){
+			deliver_row(_source.active_source(a));
+		}
+	}
+
+	/**
+	 * Event driven version of deliver_targets(). The rows of the active sources are searched for their synapses into the range [from, to).
+	 * @param from
+	 * @param to
+	 */
+	public void deliver_active_targets(int from, int to){
+		final double[] input = _target._input;
+		final short[] delay = _delay;
+		for(int a = 0; a < _source.active_source_count(); a++){
+			int i = _source.active_source(a);
+			final double glut = _source._glut_output[i];
+			final double gaba = _source._gaba_output[i];
+			if(glut > 0.0 || gaba > 0.0){
+				_target._input_touched = true;
+			}
+			int end = _row_start[i + 1];
+			for(int k = first_synapse_into(i, from); k < end && _target_index[k] < to; k++){
+				double w = _weight[k];
+				double signal = (w < 0) ? gaba : glut;
+				if(signal < 0.0){
+					signal = 0.0;
+				}
+				if(delay == null || delay[k] == 0){
+					input[_target_index[k]] += signal * w;
+				}
+				else{
+					_target.delay_buffer().add(_target_index[k], delay[k], signal * w);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the index of the first synapse of row i with a target of at least j.
+	 */
+	private int first_synapse_into(int i, int j){
+		int lo = _row_start[i];
+		int hi = _row_start[i + 1];
+		while(lo < hi){
+			int mid = (lo + hi) >>> 1;
+			if(_target_index[mid] < j){
+				lo = mid + 1;
+			}
+			else{
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	/**
+	 * Delivers to the target neurons in the index range [from, to) only. Each target receives its inputs in the same order as deliver(),
+	 * so delivering disjoint ranges at the same time gives a bit-identical result.
+	 * @param from
+	 * @param to
+	 */
+	public void deliver_targets(int from, int to){
+		if(_col_start == null){
+			build_columns();
+		}
+		final double[] glut = _source._glut_output;
+		final double[] gaba = _source._gaba_output;
+		final double[] input = _target._input;
+		final int[] col_start = _col_start;
+		final int[] source_of = _col_source;
+		final short[] delay = _delay;
+		boolean touched = false;
+		for(int j = from; j < to; j++){
+			for(int c = col_start[j]; c < col_start[j + 1]; c++){
+				int k = _col_synapse[c];
+				double w = _weight[k];
+				double signal = (w < 0) ? gaba[source_of[c]] : glut[source_of[c]];
+				if(signal < 0.0){
+					signal = 0.0;
+				}
+				touched |= signal != 0.0;
+				if(delay == null || delay[k] == 0){
+					input[j] += signal * w;
+				}
+				else{
+					_target.delay_buffer().add(j, delay[k], signal * w);
+				}
+			}
+		}
+		if(touched){
+			_target._input_touched = true;
+		}
+	}
+
+	/**
+	 * The synapses into target j are column_synapse(c) for c from column_start(j) to column_start(j + 1) - 1, in the order deliver() visits them.
+	 * build_columns() must have been called first.
+	 */
+	int column_start(int j){
+		return _col_start[j];
+	}
+
+	int column_synapse(int c){
+		return _col_synapse[c];
+	}
+
+	/**
+	 * @return the source neuron of column_synapse(c)
+	 */
+	int column_source(int c){
+		return _col_source[c];
+	}
+
+	/**
+	 * Builds the target grouped ordering of the synapses. A stable counting sort keeps the synapses of each target in the order deliver() visits them.
+	 */
+	synchronized void build_columns(){
+		if(_col_start != null){
+			return;
+		}
+		int[] col_start = new int[_target._size + 1];
+		int[] col_synapse = new int[_weight.length];
+		int[] col_source = new int[_weight.length];
+		for(int k = 0; k < _target_index.length; k++){
+			col_start[_target_index[k] + 1]++;
+		}
+		for(int j = 0; j < _target._size; j++){
+			col_start[j + 1] += col_start[j];
+		}
+		int[] next = new int[_target._size];
+		for(int i = 0; i < _source._size; i++){
+			for(int k = _row_start[i]; k < _row_start[i + 1]; k++){
+				int j = _target_index[k];
+				int c = col_start[j] + next[j]++;
+				col_synapse[c] = k;
+				col_source[c] = i;
+			}
+		}
+		_col_synapse = col_synapse;
+		_col_source = col_source;
+		_col_start = col_start;
+	}
+}
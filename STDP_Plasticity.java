@@ -0,0 +1,174 @@
+package model;
+
+import java.util.*;
+
+/**
+ * Spike timing dependent plasticity for the synapses of a Projection, driven by exponentially decaying traces of the pre and postsynaptic spikes.
+ * Every source neuron has a presynaptic trace and every target neuron a postsynaptic trace, which jump by 1 when the neuron spikes and decay with time constants tau_plus and tau_minus.
+ * When a source spikes, each synapse of its row is weakened by a_minus times the postsynaptic trace of its target. When a target spikes, each synapse into it is
+ * strengthened by a_plus times the presynaptic trace of its source. This sums the usual exponential window over every pair of pre and postsynaptic spikes,
+ * while the work done is proportional to the number of spikes times the synapses they touch rather than to synapses times time steps.
+ * A pre and postsynaptic spike in the same time step count as the presynaptic spike coming first. Spikes are paired at the times the neurons spike,
+ * so axonal delays set with Projection.set_delay() are not taken into account.
+ * The spiking neurons are taken from the spike list of each population, see Spiking_Population.step_spike(), and the traces are decayed lazily, only when they are read or increased,
+ * so silent neurons cost nothing at all.
+ * Weights are kept within [w_min, w_max]. With set_deferred() the changes are collected and only applied to the weights by apply_pending(), for example at the end of a trial.
+ * Call update() after every time step, or add the rule to a network with Network.add_plasticity().
+ * @author Scaed
+ *
+ */
+public class STDP_Plasticity {
+
+	private static final double _trace_cutoff = 30.0; //traces older than this many time constants are treated as 0
+
+	private final Projection _projection;
+	private final double _a_plus;
+	private final double _a_minus;
+	private final double _w_min;
+	private final double _w_max;
+	private final double[] _pre_decay; //e^(-dt/tau_plus) by dt
+	private final double[] _post_decay;
+
+	final double[] _pre_trace; //the state of the rule is read and written by Network_Snapshot
+	final int[] _pre_time;
+	final double[] _post_trace;
+	final int[] _post_time;
+
+	private boolean _deferred = false;
+	double[] _pending;
+
+	/**
+	 * @param projection the synapses to train
+	 * @param a_plus the weight change of a presynaptic spike immediately followed by a postsynaptic spike
+	 * @param tau_plus the time constant of potentiation in time steps
+	 * @param a_minus the size of the weight change of a postsynaptic spike immediately followed by a presynaptic spike
+	 * @param tau_minus the time constant of depression in time steps
+	 * @param w_min
+	 * @param w_max
+	 */
+	public STDP_Plasticity(Projection projection, double a_plus, double tau_plus, double a_minus, double tau_minus, double w_min, double w_max){
+		_projection = projection;
+		_a_plus = a_plus;
+		_a_minus = a_minus;
+		_w_min = w_min;
+		_w_max = w_max;
+		_pre_decay = decay_table(tau_plus);
+		_post_decay = decay_table(tau_minus);
+		_pre_trace = new double[projection.get_source().size()];
+		_pre_time = new int[projection.get_source().size()];
+		_post_trace = new double[projection.get_target().size()];
+		_post_time = new int[projection.get_target().size()];
+		projection.build_columns();
+	}
+
+	private static double[] decay_table(double tau){
+		double[] table = new double[(int)Math.ceil(tau * _trace_cutoff) + 1];
+		for(int dt = 0; dt < table.length; dt++){
+			table[dt] = Math.exp(-dt / tau);
+		}
+		return table;
+	}
+
+	public Projection get_projection(){
+		return _projection;
+	}
+
+	/**
+	 * Applies the plasticity of the spikes of the current time step of the source and target populations.
+	 * Each spike only touches its own row or column and trace, so the result does not depend on the order the spikes are listed in.
+	 */
+	public void update(){
+		Spiking_Population src = _projection.get_source();
+		Spiking_Population tgt = _projection.get_target();
+		int t_pre = src.time();
+		int t_post = tgt.time();
+		for(int s = 0; s < src.step_spike_count(); s++){
+			int i = src.step_spike(s);
+			for(int k = _projection.row_start(i); k < _projection.row_start(i + 1); k++){
+				int j = _projection.target_of(k);
+				change(k, -_a_minus * trace(_post_trace, _post_time, _post_decay, j, t_post));
+			}
+			_pre_trace[i] = trace(_pre_trace, _pre_time, _pre_decay, i, t_pre) + 1.0;
+			_pre_time[i] = t_pre;
+		}
+		for(int s = 0; s < tgt.step_spike_count(); s++){
+			int j = tgt.step_spike(s);
+			for(int c = _projection.column_start(j); c < _projection.column_start(j + 1); c++){
+				int i = _projection.column_source(c);
+				change(_projection.column_synapse(c), _a_plus * trace(_pre_trace, _pre_time, _pre_decay, i, t_pre));
+			}
+			_post_trace[j] = trace(_post_trace, _post_time, _post_decay, j, t_post) + 1.0;
+			_post_time[j] = t_post;
+		}
+		return;
+	}
+
+	/**
+	 * @return the trace of neuron n decayed to time t
+	 */
+	private static double trace(double[] trace, int[] time, double[] decay, int n, int t){
+		int dt = t - time[n];
+		return dt < decay.length ? trace[n] * decay[dt] : 0.0;
+	}
+
+	private void change(int k, double dw){
+		if(_deferred){
+			_pending[k] += dw;
+			return;
+		}
+		double w = _projection._weight[k] + dw;
+		_projection._weight[k] = (w < _w_min) ? _w_min : ((w > _w_max) ? _w_max : w);
+	}
+
+	/**
+	 * When deferred, weight changes are collected rather than applied, so the weights stay fixed for the rest of the trial.
+	 * @param deferred
+	 */
+	public void set_deferred(boolean deferred){
+		if(deferred && _pending == null){
+			_pending = new double[_projection.synapse_count()];
+		}
+		_deferred = deferred;
+		return;
+	}
+
+	public boolean is_deferred(){
+		return _deferred;
+	}
+
+	/**
+	 * @param k
+	 * @return the change collected for synapse k since the last apply_pending()
+	 */
+	public double pending_change(int k){
+		return _pending == null ? 0.0 : _pending[k];
+	}
+
+	/**
+	 * Adds the collected changes to the weights, keeping them within [w_min, w_max], and clears them.
+	 */
+	public void apply_pending(){
+		if(_pending == null){
+			return;
+		}
+		for(int k = 0; k < _pending.length; k++){
+			if(_pending[k] != 0.0){
+				double w = _projection._weight[k] + _pending[k];
+				_projection._weight[k] = (w < _w_min) ? _w_min : ((w > _w_max) ? _w_max : w);
+				_pending[k] = 0.0;
+			}
+		}
+		return;
+	}
+
+	/**
+	 * Clears the traces, so that spikes from before a reset do not pair with spikes after it. Weights and pending changes are kept.
+	 */
+	public void reset_traces(){
+		Arrays.fill(_pre_trace, 0.0);
+		Arrays.fill(_post_trace, 0.0);
+		Arrays.fill(_pre_time, 0);
+		Arrays.fill(_post_time, 0);
+		return;
+	}
+}
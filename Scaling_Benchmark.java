@@ -0,0 +1,167 @@
+package tasks;
+
+import java.io.*;
+import java.lang.management.*;
+import java.nio.file.*;
+import java.util.*;
+
+import model.*;
+
+/**
+ * Builds networks of increasing size, density and activity and reports how fast they run, to find the points where memory or cache use makes performance fall off.
+ * Each network has an excitatory pyramidal population holding 80% of the neurons and an inhibitory striatal population holding the rest,
+ * connected all to all by random projections with the given number of synapses per neuron. In the high activity regime the pyramidal neurons receive a steady drive.
+ * For every network the build time, neuron updates per second, synaptic events per second, milliseconds simulated per second of wall clock time,
+ * peak heap use and garbage collection time are written as JSON and CSV.
+ * Usage: Scaling_Benchmark [ticks] [largest network] [output file prefix]
+ * @author Scaed
+ *
+ */
+public class Scaling_Benchmark {
+
+	private static final int[] _sizes = {1000, 10000, 100000, 1000000};
+	private static final int[] _synapses_per_neuron = {10, 100};
+	private static final String[] _regimes = {"low", "high"};
+	private static final long _max_synapses = 50000000L; //larger networks are skipped to stay within a typical heap
+
+	public static void main(String[] args) throws IOException{
+		int ticks = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		int largest = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+		String prefix = args.length > 2 ? args[2] : "scaling";
+
+		run(_sizes[0], _synapses_per_neuron[0], _regimes[1], ticks); //warms the JIT up so the first result is not penalised
+		ArrayList<Map<String, Object>> results = new ArrayList<Map<String, Object>>();
+		for(int size : _sizes){
+			for(int synapses : _synapses_per_neuron){
+				for(String regime : _regimes){
+					if(size > largest || (long)size * synapses > _max_synapses){
+						continue;
+					}
+					Map<String, Object> result = run(size, synapses, regime, ticks);
+					System.out.println(result);
+					results.add(result);
+				}
+			}
+		}
+		write_json(results, Paths.get(prefix + ".json"));
+		write_csv(results, Paths.get(prefix + ".csv"));
+		return;
+	}
+
+	private static Map<String, Object> run(int size, int synapses, String regime, int ticks){
+		System.gc();
+		for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()){
+			pool.resetPeakUsage();
+		}
+		long gc_start = gc_time();
+
+		long build_start = System.nanoTime();
+		Spiking_Population excitatory = Spiking_Population.pyramidal(size * 4 / 5);
+		Spiking_Population inhibitory = Spiking_Population.striatal(size - excitatory.size());
+		Spiking_Population[] populations = {excitatory, inhibitory};
+		Network network = new Network();
+		long seed = 1;
+		for(Spiking_Population src : populations){
+			for(Spiking_Population tgt : populations){
+				//Each neuron receives synapses from both populations in proportion to their sizes, with the total weight it receives kept the same at every density
+				double prob = (double)synapses / size;
+				double mean = ((src == excitatory) ? 200.0 : -400.0) / synapses;
+				network.add_projection(Projection.random(src, tgt, mean, Math.abs(mean) / 5, prob, seed++));
+			}
+		}
+		network.set_event_driven(true);
+		excitatory.set_vectorized(true);
+		inhibitory.set_vectorized(true);
+		double build_ms = (System.nanoTime() - build_start) / 1e6;
+
+		double drive = regime.equals("high") ? 120.0 : 0.0;
+		long run_ns = 0;
+		long spikes = 0;
+		long events = 0;
+		for(int t = 0; t < ticks; t++){
+			if(drive != 0.0){
+				for(int i = 0; i < excitatory.size(); i++){
+					excitatory.raise_input_by(i, drive);
+				}
+			}
+			long step_start = System.nanoTime();
+			network.step();
+			run_ns += System.nanoTime() - step_start;
+
+			//Spikes are counted as they happen, outside the timed step, as the spike histories only reach back a limited number of steps
+			for(Spiking_Population p : populations){
+				for(int i = 0; i < p.size(); i++){
+					if(p.did_spike(i)){
+						spikes++;
+						for(Projection projection : network.get_projections()){
+							if(projection.get_source() == p){
+								events += projection.row_start(i + 1) - projection.row_start(i);
+							}
+						}
+					}
+				}
+			}
+		}
+		double run_s = run_ns / 1e9;
+
+		long peak_heap = 0;
+		for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()){
+			if(pool.getType() == MemoryType.HEAP){
+				peak_heap += pool.getPeakUsage().getUsed();
+			}
+		}
+
+		LinkedHashMap<String, Object> result = new LinkedHashMap<String, Object>();
+		result.put("neurons", size);
+		result.put("synapses_per_neuron", synapses);
+		result.put("synapses", network.get_projections().stream().mapToLong(Projection::synapse_count).sum());
+		result.put("regime", regime);
+		result.put("ticks", ticks);
+		result.put("build_ms", build_ms);
+		result.put("neuron_updates_per_s", (double)size * ticks / run_s);
+		result.put("synaptic_events_per_s", events / run_s);
+		result.put("simulated_ms_per_s", ticks / run_s);
+		result.put("mean_rate_hz", spikes * 1000.0 / ((double)size * ticks));
+		result.put("peak_heap_mb", peak_heap / (1024.0 * 1024.0));
+		result.put("gc_ms", gc_time() - gc_start);
+		return result;
+	}
+
+	private static long gc_time(){
+		long total = 0;
+		for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()){
+			total += Math.max(gc.getCollectionTime(), 0);
+		}
+		return total;
+	}
+
+	static void write_json(List<Map<String, Object>> results, Path file) throws IOException{
+		StringBuilder out = new StringBuilder("[\n");
+		for(int r = 0; r < results.size(); r++){
+			out.append("  {");
+			int k = 0;
+			for(Map.Entry<String, Object> e : results.get(r).entrySet()){
+				out.append(k++ > 0 ? ", " : "").append('"').append(e.getKey()).append("\": ");
+				out.append(e.getValue() instanceof String ? "\"" + e.getValue() + "\"" : String.valueOf(e.getValue()));
+			}
+			out.append(r < results.size() - 1 ? "},\n" : "}\n");
+		}
+		out.append("]\n");
+		Files.write(file, out.toString().getBytes("UTF-8"));
+	}
+
+	static void write_csv(List<Map<String, Object>> results, Path file) throws IOException{
+		StringBuilder out = new StringBuilder();
+		if(!results.isEmpty()){
+			out.append(String.join(",", results.get(0).keySet())).append('\n');
+		}
+		for(Map<String, Object> result : results){
+			StringJoiner row = new StringJoiner(",");
+			for(Object v : result.values()){
+				row.add(String.valueOf(v));
+			}
+			out.append(row).append('\n');
+		}
+		Files.write(file, out.toString().getBytes("UTF-8"));
+	}
+}
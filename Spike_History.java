@@ -0,0 +1,185 @@
+package model;
+
+/**
+ * A bounded record of the spike times of a single neuron, stored as primitive ints in a ring buffer.
+ * Spikes older than the time horizon are dropped as new spikes are recorded, and once the capacity is reached the oldest spike is overwritten,
+ * so the memory used stays fixed no matter how long a trial runs. The buffer starts small and grows up to the capacity as needed.
+ * Spikes are indexed from the most recent (0) to the oldest (size() - 1), matching the order of the list previously returned by Spiking_Node.DEBUG_get_spike_times().
+ * @author Scaed
+ *
+ */
+public class Spike_History {
+
+	private static final int _initial_length = 8;
+
+	private int[] _times;
+	private int _start = 0; //index of the oldest spike
+	private int _size = 0;
+	private int _capacity;
+	private int _horizon;
+
+	/**
+	 * @param capacity the largest number of spikes retained
+	 * @param horizon spikes more than horizon time steps older than the newest spike are dropped. Use 0 to keep spikes until the capacity is reached.
+	 */
+	public Spike_History(int capacity, int horizon){
+		_times = new int[Math.max(1, Math.min(_initial_length, capacity))];
+		configure(capacity, horizon);
+	}
+
+	/**
+	 * Changes the capacity and time horizon. Retained spikes that no longer fit are dropped, oldest first.
+	 * @param capacity
+	 * @param horizon
+	 */
+	public void configure(int capacity, int horizon){
+		if(capacity < 1){
+			capacity = 1;
+		}
+		_capacity = capacity;
+		_horizon = horizon;
+		while(_size > _capacity){
+			drop_oldest();
+		}
+		if(_size > 0){
+			drop_before_horizon(newest());
+		}
+		if(_times.length > _capacity){
+			resize(Math.max(_size, 1));
+		}
+		return;
+	}
+
+	public int capacity(){
+		return _capacity;
+	}
+
+	public int horizon(){
+		return _horizon;
+	}
+
+	public void clear(){
+		_start = 0;
+		_size = 0;
+		return;
+	}
+
+	/**
+	 * Records a spike at time t. Spike times must be recorded in increasing order.
+	 * @param t
+	 */
+	public void record(int t){
+		drop_before_horizon(t);
+		if(_size == _times.length){
+			if(_times.length < _capacity){
+				resize((int)Math.min((long)_times.length * 2, _capacity));
+			}
+			else{
+				drop_oldest();
+			}
+		}
+		_times[(_start + _size) % _times.length] = t;
+		_size++;
+		return;
+	}
+
+	/**
+	 * @return the number of spikes retained
+	 */
+	public int size(){
+		return _size;
+	}
+
+	public boolean is_empty(){
+		return _size == 0;
+	}
+
+	/**
+	 * @param i
+	 * @return the time of the i-th most recent spike, where 0 is the most recent.
+	 */
+	public int get(int i){
+		return _times[(_start + _size - 1 - i) % _times.length];
+	}
+
+	/**
+	 * @return the time of the most recent spike or -1 if no spike is retained.
+	 */
+	public int last_spike_time(){
+		if(_size == 0){
+			return -1;
+		}
+		return newest();
+	}
+
+	/**
+	 * @param t0
+	 * @param t1
+	 * @return the number of retained spikes in the interval [t0, t1).
+	 */
+	public int count_in(int t0, int t1){
+		int count = 0;
+		for(int i = 0; i < _size; i++){
+			int s = get(i);
+			if(s < t0){
+				break;
+			}
+			if(s < t1){
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @param t
+	 * @return the number of retained spikes at or after time t.
+	 */
+	public int count_since(int t){
+		return count_in(t, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @param t0
+	 * @param t1
+	 * @return the retained spike times in the interval [t0, t1), oldest first.
+	 */
+	public int[] spikes_in(int t0, int t1){
+		int[] out = new int[count_in(t0, t1)];
+		int j = out.length;
+		for(int i = 0; i < _size && j > 0; i++){
+			int s = get(i);
+			if(s < t1){
+				out[--j] = s;
+			}
+		}
+		return out;
+	}
+
+	private int newest(){
+		return _times[(_start + _size - 1) % _times.length];
+	}
+
+	private void drop_oldest(){
+		_start = (_start + 1) % _times.length;
+		_size--;
+	}
+
+	private void drop_before_horizon(int t){
+		if(_horizon <= 0){
+			return;
+		}
+		while(_size > 0 && _times[_start] <= t - _horizon){
+			drop_oldest();
+		}
+	}
+
+	private void resize(int length){
+		int[] times = new int[length];
+		for(int i = 0; i < _size; i++){
+			times[i] = _times[(_start + i) % _times.length];
+		}
+		_times = times;
+		_start = 0;
+	}
+}
@@ -0,0 +1,106 @@
+package model;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+
+/**
+ * Streams the events of a file written by Spike_Recorder, one at a time, holding only a small buffer of the file in memory.
+ * Call next() to move to the next event and then time() and neuron() to read it.
+ * @author Scaed
+ *
+ */
+public class Spike_Raster_Reader implements Closeable {
+
+	private final FileChannel _channel;
+	private final ByteBuffer _buffer = ByteBuffer.allocateDirect(Spike_Recorder._buffer_size).order(ByteOrder.LITTLE_ENDIAN);
+	private boolean _eof = false;
+	private int _time = 0;
+	private int _neuron = 0;
+
+	/**
+	 * @param file
+	 * @throws IOException
+	 * @throws IllegalArgumentException if the file was not written by Spike_Recorder
+	 */
+	public Spike_Raster_Reader(Path file) throws IOException{
+		_channel = FileChannel.open(file, StandardOpenOption.READ);
+		_buffer.flip();
+		fill();
+		if(_buffer.remaining() < 4 || _buffer.getInt() != Spike_Recorder._magic){
+			_channel.close();
+			throw new IllegalArgumentException(file + " is not a spike raster.");
+		}
+	}
+
+	/**
+	 * Moves to the next event.
+	 * @return false if there are no more events
+	 * @throws IOException
+	 */
+	public boolean next() throws IOException{
+		if(_buffer.remaining() < 10){ //the longest event is two 5 byte integers
+			fill();
+		}
+		if(!_buffer.hasRemaining()){
+			return false;
+		}
+		int dt = unzigzag(get_varint());
+		int id = unzigzag(get_varint());
+		_time += dt;
+		_neuron = (dt == 0) ? _neuron + id : id;
+		return true;
+	}
+
+	/**
+	 * @return the time of the current event
+	 */
+	public int time(){
+		return _time;
+	}
+
+	/**
+	 * @return the id of the neuron that spiked, as given by Spike_Recorder
+	 */
+	public int neuron(){
+		return _neuron;
+	}
+
+	public void close() throws IOException{
+		_channel.close();
+	}
+
+	private void fill() throws IOException{
+		if(_eof){
+			return;
+		}
+		_buffer.compact();
+		while(_buffer.hasRemaining()){
+			if(_channel.read(_buffer) < 0){
+				_eof = true;
+				break;
+			}
+		}
+		_buffer.flip();
+	}
+
+	private int get_varint() throws IOException{
+		int v = 0;
+		for(int shift = 0; shift < 35; shift += 7){
+			if(!_buffer.hasRemaining()){
+				throw new EOFException("The spike raster ends in the middle of an event.");
+			}
+			byte b = _buffer.get();
+			v |= (b & 0x7F) << shift;
+			if(b >= 0){
+				return v;
+			}
+		}
+		throw new IOException("The spike raster is corrupt.");
+	}
+
+	private static int unzigzag(int v){
+		return (v >>> 1) ^ -(v & 1);
+	}
+}
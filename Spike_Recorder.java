@@ -0,0 +1,250 @@
+package model;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Records the spikes of nodes and populations to a file as the simulation runs, so spikes do not have to be kept on the heap until a trial ends.
+ * Each registered neuron gets an id: a node gets one id and a population gets a block of consecutive ids, one per neuron.
+ * Calling record() after every time step appends a (time, id) event for every neuron that spiked. Events are encoded into direct (off heap) buffers
+ * and a background thread writes full buffers to the file, so the simulation only waits when every buffer is waiting to be written.
+ * Each event is stored as two variable length integers, the change in time from the previous event and the change in id from the previous event of the same time step
+ * (or the id itself at a new time step), so a busy time step costs about two bytes per spike. Read the file back with Spike_Raster_Reader.
+ * @author Scaed
+ *
+ */
+public class Spike_Recorder implements Closeable {
+
+	static final int _magic = 0x53504B31; //"SPK1"
+	static final int _buffer_size = 1 << 20;
+	private static final int _buffer_count = 4;
+	private static final int _max_event_bytes = 20;
+
+	private final ArrayList<Spiking_Node> _nodes = new ArrayList<Spiking_Node>();
+	private final ArrayList<Integer> _node_ids = new ArrayList<Integer>();
+	private final ArrayList<Neuron_Population> _populations = new ArrayList<Neuron_Population>();
+	private final ArrayList<Integer> _population_ids = new ArrayList<Integer>();
+	private int _next_id = 0;
+	private int[] _step_spikes = new int[0]; //the spikes of one population in one time step, in index order
+
+	private final FileChannel _channel;
+	private final ArrayBlockingQueue<ByteBuffer> _free = new ArrayBlockingQueue<ByteBuffer>(_buffer_count);
+	private final ArrayBlockingQueue<ByteBuffer> _full = new ArrayBlockingQueue<ByteBuffer>(_buffer_count + 1);
+	private static final ByteBuffer _end = ByteBuffer.allocate(0); //tells the writer thread to stop
+	private final Thread _writer;
+	private volatile IOException _error = null;
+	private ByteBuffer _buffer;
+	private int _last_time = 0;
+	private int _last_id = 0;
+	private long _event_count = 0;
+	private boolean _closed = false;
+
+	/**
+	 * @param file the file to record to. It is replaced if it exists.
+	 * @throws IOException
+	 */
+	public Spike_Recorder(Path file) throws IOException{
+		_channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		for(int b = 0; b < _buffer_count; b++){
+			_free.add(ByteBuffer.allocateDirect(_buffer_size).order(ByteOrder.LITTLE_ENDIAN));
+		}
+		_buffer = _free.poll();
+		_buffer.putInt(_magic);
+		_writer = new Thread(this::write_buffers, "spike-recorder");
+		_writer.setDaemon(true);
+		_writer.start();
+	}
+
+	/**
+	 * @param n
+	 * @return the id given to the node
+	 */
+	public int add_node(Spiking_Node n){
+		_nodes.add(n);
+		_node_ids.add(_next_id);
+		return _next_id++;
+	}
+
+	/**
+	 * @param p a double or single precision population
+	 * @return the id given to neuron 0 of the population. Neuron i has id add_population(p) + i.
+	 */
+	public int add_population(Neuron_Population p){
+		_populations.add(p);
+		_population_ids.add(_next_id);
+		_next_id += p.size();
+		return _population_ids.get(_populations.size() - 1);
+	}
+
+	/**
+	 * Registers every spiking node and population of the network, in the order they were added to it, followed by its float populations.
+	 * @param network
+	 */
+	public void add_network(Network network){
+		for(Node n : network.get_nodes()){
+			if(n instanceof Spiking_Node){
+				add_node((Spiking_Node)n);
+			}
+		}
+		for(Spiking_Population p : network.get_populations()){
+			add_population(p);
+		}
+		for(Float_Population p : network.get_float_populations()){
+			add_population(p);
+		}
+		return;
+	}
+
+	/**
+	 * Appends an event for every registered neuron that spiked on its last time step. Call once per time step, after the network has been stepped.
+	 * The spikes of a population are read from its list of the neurons that spiked, see Neuron_Population.step_spike(), so the work is in proportion
+	 * to the spikes rather than to the neurons. The list is sorted when the population was integrated in parallel, so events are always in id order.
+	 * @param t the time the events are recorded at
+	 */
+	public void record(int t){
+		for(int n = 0; n < _nodes.size(); n++){
+			if(_nodes.get(n).did_spike()){
+				record_spike(t, _node_ids.get(n));
+			}
+		}
+		for(int p = 0; p < _populations.size(); p++){
+			Neuron_Population population = _populations.get(p);
+			int count = population.step_spike_count();
+			if(count == 0){
+				continue;
+			}
+			if(_step_spikes.length < count){
+				_step_spikes = new int[population.size()];
+			}
+			boolean sorted = true;
+			for(int k = 0; k < count; k++){
+				_step_spikes[k] = population.step_spike(k);
+				sorted &= k == 0 || _step_spikes[k] > _step_spikes[k - 1];
+			}
+			if(!sorted){
+				Arrays.sort(_step_spikes, 0, count);
+			}
+			int base = _population_ids.get(p);
+			for(int k = 0; k < count; k++){
+				record_spike(t, base + _step_spikes[k]);
+			}
+		}
+		return;
+	}
+
+	/**
+	 * Appends a single event.
+	 * @param t
+	 * @param id
+	 */
+	public void record_spike(int t, int id){
+		if(_buffer.remaining() < _max_event_bytes){
+			hand_off();
+		}
+		int dt = t - _last_time;
+		put_varint(zigzag(dt));
+		put_varint(zigzag(dt == 0 ? id - _last_id : id));
+		_last_time = t;
+		_last_id = id;
+		_event_count++;
+		return;
+	}
+
+	public long event_count(){
+		return _event_count;
+	}
+
+	/**
+	 * Writes the remaining events and closes the file. Waits for the background thread to finish.
+	 * The file is closed and the thread stopped even if writing has already failed, in which case the remaining events are dropped.
+	 * @throws IOException if writing any of the events failed
+	 */
+	public void close() throws IOException{
+		if(_closed){
+			return;
+		}
+		_closed = true;
+		try{
+			if(_error == null){
+				hand_off();
+			}
+		}
+		catch(IllegalStateException e){
+			if(_error == null){
+				throw e;
+			}
+			//the writer failed after the check, its error is thrown below
+		}
+		finally{
+			try{
+				_full.put(_end);
+				_writer.join();
+			}
+			catch(InterruptedException e){
+				Thread.currentThread().interrupt();
+			}
+			_channel.close();
+		}
+		if(_error != null){
+			throw _error;
+		}
+	}
+
+	private void put_varint(int v){
+		while((v & ~0x7F) != 0){
+			_buffer.put((byte)((v & 0x7F) | 0x80));
+			v >>>= 7;
+		}
+		_buffer.put((byte)v);
+	}
+
+	static int zigzag(int v){
+		return (v << 1) ^ (v >> 31);
+	}
+
+	/**
+	 * Passes the current buffer to the writer thread and takes a free one, waiting only if every buffer is still waiting to be written.
+	 */
+	private void hand_off(){
+		if(_error != null){
+			throw new IllegalStateException("Writing the spike raster failed", _error);
+		}
+		try{
+			_buffer.flip();
+			_full.put(_buffer);
+			_buffer = _free.take();
+		}
+		catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while recording spikes", e);
+		}
+	}
+
+	private void write_buffers(){
+		try{
+			while(true){
+				ByteBuffer buffer = _full.take();
+				if(buffer == _end){
+					return;
+				}
+				try{
+					while(buffer.hasRemaining()){
+						_channel.write(buffer);
+					}
+				}
+				catch(IOException e){
+					_error = e;
+				}
+				buffer.clear();
+				_free.put(buffer);
+			}
+		}
+		catch(InterruptedException e){
+			return;
+		}
+	}
+}
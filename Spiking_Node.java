@@ -4,48 +4,57 @@ import java.util.*;
 
 /**
  * An extension of Node that implements the framework for representing a spiking neuron using the Izhekivitch simple model.
- * Many specific parameter values are determined by the specific kind of neuron being modeled and so this class is left as an abstract.
- * Those parameter and the function that uses them are included in this abstract class as comments to foster consistent naming within subclasses.
+ * Many specific parameter values are determined by the specific kind of neuron being modeled. They are held by the Neuron_Type of the node,
+ * so every kind of neuron is integrated by the same step() method and new kinds can be defined without a subclass, see Neuron_Type.load().
  * Several other parameters are stored in size 1 arrays so that changes made to a given instance affect all the instances of the same connection.
- * The _gaba_alpha_curve and _glut_alpha_curve arrays may be confusing; see the calc_output method for more information on their function and purpose.
+ * The _glut_kernel and _gaba_kernel tables may be confusing; see the calc_output method for more information on their function and purpose.
  * @author Scaed
  *
  */
-public abstract class Spiking_Node extends Node{
-	protected final Double[] _membrane_potential = new Double[1];
-	protected final Double[] _u = new Double[1];
-	protected final LinkedList<Integer> _spike_times = new LinkedList<Integer>();
+public class Spiking_Node extends Node{
+	protected final Neuron_Type _type;
+	protected final double[] _membrane_potential = new double[1];
+	protected final double[] _u = new double[1];
+	protected final Spike_History _spike_times;
 	protected final int[] _t = new int[1];
-	protected final Double[] _glut_output = new Double[1];
-	protected final Double[] _gaba_output = new Double[1];
+	protected final double[] _glut_output = new double[1];
+	protected final double[] _gaba_output = new double[1];
+	protected boolean _recursive_output = false;
+	protected final double[] _glut_trace = new double[2]; //recursive kernel state: sum of r^n and sum of n*r^n over recent spikes
+	protected final double[] _gaba_trace = new double[2];
+	protected Kernel_Table _glut_kernel;
+	protected Kernel_Table _gaba_kernel;
+	private double _glut_decay;
+	private double _gaba_decay;
+	private double _glut_scale;
+	private double _gaba_scale;
+	private boolean _fast_forward = false;
+	private boolean _tracking = false; //whether the current step is checked for quiescence
+	private boolean _quiet = false; //at a fixed point with no output, see set_fast_forward()
+	private double _last_mp; //state at the start of the current step
+	private double _last_u;
+	private double _last_input;
 	
 	protected static final double _min_alpha_value = 0.0000000001;
-	//protected static final double _mp_spike_threshold;
-	//protected static final double _u_spike_threshold_factor;
-	//protected static final double _mp_rest;
 	protected static final double _u_rest = 0.0;
-	//protected static final double _threshold;
-	//protected static final double _reset;
-	//protected static final double _u_spike_add;
-	//protected static final double _k;
-	//protected static final double _C;
-	//protected static final double _a;
-	//protected static final double _b;
-	//protected static final double _noise_stdv;
 	protected static final int _max_act_durr = 747;
 	
-	protected static Random _rng = new Random();
+	private static SplittableRandom _seed_source = new SplittableRandom();
+	private SplittableRandom _noise_rng; //every node has its own noise stream so nodes can be stepped from different threads
 	
-	protected static final Double _lambda_glut = 60.0;
-	protected static final Double _lambda_gaba = 30.0;
-	public static Double[] _gaba_alpha_curve; 
-	public static Double[] _glut_alpha_curve;
+	protected static final double _lambda_glut = 60.0;
+	protected static final double _lambda_gaba = 30.0;
+	public static final double _recursive_output_tolerance = 0.00000001;
 
-	public Spiking_Node(){
-		if (_gaba_alpha_curve == null || _gaba_alpha_curve == null){
-			calc_alpha_curve();
-		}
-		
+	/**
+	 * @param type the parameters of the kind of neuron, see Neuron_Type
+	 */
+	public Spiking_Node(Neuron_Type type){
+		_type = type;
+		_membrane_potential[0] = type.mp_rest();
+		use_kernels(Kernel_Table.alpha(_lambda_glut), Kernel_Table.alpha(_lambda_gaba));
+		_spike_times = new Spike_History(spike_horizon(), spike_horizon());
+		_noise_rng = new SplittableRandom(next_seed());
 		_u[0] = _u_rest;
 		_spike_times.clear();
 		_t[0] = 0;
@@ -54,14 +63,170 @@ public abstract class Spiking_Node extends Node{
 	}
 	
 	/**
-	 * step() must be defined in each subclass. This is a dummy function to foster consistent naming within the interfaces of the subclasses.
-	 * Although the values of the various parameters can vary, their use generally stays the same, as defined in Izhekivitch's work.
-	 * Thus, for most neuron types this method can be copied into the subclasses where the values of the parameters can be accessed.
+	 * Used by Population_Node, whose neuron is held by its population. The view gets no spike history or noise stream of its own and draws no seed,
+	 * so creating views does not change the noise of nodes created afterwards.
+	 * @param population
+	 */
+	Spiking_Node(Spiking_Population population){
+		_type = population.type();
+		use_kernels(population.glut_kernel(), population.gaba_kernel());
+		_spike_times = null;
+	}
+	
+	/**
+	 * Reseeds the source that gives every new node and population its own noise seed. Networks built after this call, in the same order, draw the same noise.
+	 * @param seed
+	 */
+	public static synchronized void set_seed(long seed){
+		_seed_source = new SplittableRandom(seed);
+		return;
+	}
+
+	/**
+	 * @return a new noise seed from the shared seed source.
+	 */
+	static synchronized long next_seed(){
+		return _seed_source.nextLong();
+	}
+
+	/**
+	 * Restarts the noise stream of this node from the given seed.
+	 * @param seed
+	 */
+	public void set_noise_seed(long seed){
+		_noise_rng = new SplittableRandom(seed);
+		return;
+	}
+
+	/**
+	 * No random number is drawn when the standard deviation is 0.0, which is the case for most neuron types.
+	 * @param stdv
+	 * @return Gaussian noise of the given standard deviation from the stream of this node.
+	 */
+	protected final double noise(double stdv){
+		if(stdv == 0.0){
+			return 0.0;
+		}
+		return _noise_rng.nextGaussian() * stdv;
+	}
+	
+	/**
+	 * @return a new node of the same kind and settings as this one, in its reset state
+	 */
+	public Spiking_Node replicate(){
+		return copy_settings_to(new Spiking_Node(_type));
+	}
+	
+	/**
+	 * Copies the settings of this node that are not part of its state, the kernels, the output calculation and the size of the spike history, to a new node.
+	 * Used by the replicate() methods of the subclasses.
+	 * @param n
+	 * @return n
+	 */
+	protected Spiking_Node copy_settings_to(Spiking_Node n){
+		n.set_kernels(_glut_kernel, _gaba_kernel);
+		n.spike_history().configure(spike_history().capacity(), spike_history().horizon());
+		n.set_recursive_output(_recursive_output);
+		n.set_fast_forward(_fast_forward);
+		return n;
+	}
+	
+	/**
+	 * Switches quiescent fast-forward on or off. The node is quiet once a time step with no input leaves its membrane potential and u bit for bit unchanged
+	 * and it has no transmitter output, which is where noise free neurons settle when nothing drives them. Stepping a quiet node again changes nothing,
+	 * so with fast-forward on step() only advances the clock until input arrives. The results are bit-identical to running without fast-forward.
+	 * Neuron types with noise never settle and are always stepped in full.
+	 * @param fast_forward
+	 */
+	public void set_fast_forward(boolean fast_forward){
+		_fast_forward = fast_forward;
+		_quiet = false;
+		return;
+	}
+	
+	public boolean is_fast_forward(){
+		return _fast_forward;
+	}
+	
+	/**
+	 * @return true if the node is quiet, see set_fast_forward().
 	 */
-	/*public void step(){
-		double _err = _rng.nextGaussian() * _noise_stdv;
-		double u_change = _a * (_b * (_membrane_potential[0] - _mp_rest) - _u[0]); //diff 1
-		double mp_change = ((_k * (_membrane_potential[0] - _mp_rest) * (_membrane_potential[0] - _threshold)) - _u[0] + _input[0] + _err) / _C;
+	public boolean is_quiet(){
+		return _quiet;
+	}
+	
+	/**
+	 * Marks the node as not quiet, so the next step is run in full. Needed when the state of the node is changed directly, see Network_Snapshot.
+	 */
+	public void wake(){
+		_quiet = false;
+		return;
+	}
+	
+	/**
+	 * Called by step() once the delayed input has been taken. A quiet node with no input only has its clock advanced.
+	 * Otherwise the state at the start of the step is kept for update_quiet().
+	 * @param noise_stdv the noise of the neuron type
+	 * @return true if the step has been skipped
+	 */
+	private boolean skip_quiet_step(double noise_stdv){
+		_tracking = _fast_forward && noise_stdv == 0.0;
+		if(!_tracking){
+			return false;
+		}
+		if(_quiet && _input[0] == 0.0){
+			_t[0]++;
+			return true;
+		}
+		_last_mp = _membrane_potential[0];
+		_last_u = _u[0];
+		_last_input = _input[0];
+		return false;
+	}
+	
+	/**
+	 * Called at the end of step() to record whether the node is now quiet.
+	 */
+	private void update_quiet(){
+		if(!_tracking){
+			return;
+		}
+		_quiet = _last_input == 0.0 && Double.doubleToRawLongBits(_last_mp) == Double.doubleToRawLongBits(_membrane_potential[0])
+				&& Double.doubleToRawLongBits(_last_u) == Double.doubleToRawLongBits(_u[0]) && _glut_output[0] == 0.0 && _gaba_output[0] == 0.0
+				&& (!_recursive_output || (_glut_trace[0] == 0.0 && _glut_trace[1] == 0.0 && _gaba_trace[0] == 0.0 && _gaba_trace[1] == 0.0));
+		return;
+	}
+	
+	/**
+	 * This method advances the node by a single time step, see integrate().
+	 * Network calls integrate() directly for nodes whose class does not override this method. Subclasses that do override it are stepped through their own step().
+	 */
+	public void step(){
+		integrate();
+		return;
+	}
+	
+	/**
+	 * Advances the node by a single time step using the parameters of its Neuron_Type, as defined in Izhekivitch's work.
+	 * While the membrane potential is at most _b_threshold _b_1 is used and above it _b_2, which gives the two modes of the thalamic neuron.
+	 * For the other kinds both hold _b so the usual equation results. Every kind shares this final method, so a loop that integrates nodes of mixed kinds,
+	 * as Network does, calls a single method that the JIT can inline, where a step() per subclass would make the call site megamorphic.
+	 */
+	protected final void integrate(){
+		take_delayed_input();
+		final Neuron_Type type = _type;
+		if(skip_quiet_step(type.noise_stdv())){
+			return;
+		}
+		double _err = noise(type.noise_stdv());
+		double u_change;
+		if(_membrane_potential[0] <= type.b_threshold()){
+			u_change = type.a() * (type.b_1() * (_membrane_potential[0] - type.mp_rest_u()) - _u[0]);
+		}
+		else{
+			u_change = type.a() * (type.b_2() * (_membrane_potential[0] - type.mp_rest_u()) - _u[0]);
+		}
+		double mp_change = ((type.k() * (_membrane_potential[0] - type.mp_rest()) * (_membrane_potential[0] - type.threshold())) - _u[0] + _input[0] + _err) / type.C();
 		
 		_input[0] = 0.0;
 		_glut_output[0] = 0.0;
@@ -70,14 +235,22 @@ public abstract class Spiking_Node extends Node{
 		_membrane_potential[0] += mp_change;
 		_u[0] += u_change;
 				
-		if(_membrane_potential[0] >= (_mp_spike_threshold + (_u_spike_threshold_factor * _u[0]))){
-			_spike_times.addFirst(_t[0]);
-			_membrane_potential[0] = _reset - (_u_spike_threshold_factor * _u[0]);
-			_u[0] += _u_spike_add;
+		if(_membrane_potential[0] >= (type.mp_spike_threshold() + (type.u_spike_threshold_factor() * _u[0]))){
+			_spike_times.record(_t[0]);
+			_membrane_potential[0] = type.reset() - (type.u_spike_threshold_factor() * _u[0]);
+			_u[0] += type.u_spike_add();
 		}
 
 		calc_output();
-	}*/
+		update_quiet();
+	}
+	
+	/**
+	 * @return the kind of neuron this node models
+	 */
+	public Neuron_Type type(){
+		return _type;
+	}
 	
 	/**
 	 * Often neural networks are run many times. This method resets the node between trials.
@@ -89,17 +262,44 @@ public abstract class Spiking_Node extends Node{
 		_u[0] = _u_rest;
 		_spike_times.clear();
 		_t[0] = 0;
+		_membrane_potential[0] = _type.mp_rest();
+		clear_traces();
+		if(_delay_buffer != null){
+			_delay_buffer.clear();
+		}
+		_quiet = false;
 	}
 	
 	public Double glut_output(){
+		return glut_output_value();
+	}
+	
+	/**
+	 * @return the glutamate output as a primitive double
+	 */
+	public double glut_output_value(){
 		return _glut_output[0];
 	}
 	
 	public Double gaba_output(){
+		return gaba_output_value();
+	}
+	
+	/**
+	 * @return the GABA output as a primitive double
+	 */
+	public double gaba_output_value(){
 		return _gaba_output[0];
 	}
 	
 	public Double membrane_potential(){
+		return membrane_potential_value();
+	}
+	
+	/**
+	 * @return the membrane potential as a primitive double
+	 */
+	public double membrane_potential_value(){
 		return _membrane_potential[0];
 	}
 	
@@ -109,30 +309,31 @@ public abstract class Spiking_Node extends Node{
 	 * The alpha curve models the decay of neurotransmitter from a single spike. The concentration of neurotransmitter at a given point of time can be found by summing the points of the curve corresponding to the times since recent spikes.
 	 */
 	protected void calc_output(){
+		if(_recursive_output){
+			calc_recursive_output();
+			return;
+		}
 		boolean glut_done = false;
 		boolean gaba_done = false;
-		for(int s : _spike_times){
+		final double[] glut_curve = _glut_kernel.values();
+		final double[] gaba_curve = _gaba_kernel.values();
+		for(int i = 0; i < _spike_times.size(); i++){
+			int s = _spike_times.get(i);
 			int alpha_curve_idx = (_t[0] - s) + 1;
 			if(!glut_done){
-				if(alpha_curve_idx >= _glut_alpha_curve.length){
-					glut_done = true;
-				}
-				else if((_glut_alpha_curve[alpha_curve_idx] < _min_alpha_value) && (alpha_curve_idx > _lambda_glut)){
+				if(alpha_curve_idx >= glut_curve.length){
 					glut_done = true;
 				}
 				else{
-					_glut_output[0] += _glut_alpha_curve[alpha_curve_idx];
+					_glut_output[0] += glut_curve[alpha_curve_idx];
 				}
 			}
 			if(!gaba_done){	
-				if(alpha_curve_idx >= _gaba_alpha_curve.length){
-					gaba_done = true;
-				}
-				else if((_gaba_alpha_curve[alpha_curve_idx] < _min_alpha_value) && (alpha_curve_idx > _lambda_gaba)){
+				if(alpha_curve_idx >= gaba_curve.length){
 					gaba_done = true;
 				}
 				else{
-					_gaba_output[0] += _gaba_alpha_curve[alpha_curve_idx];
+					_gaba_output[0] += gaba_curve[alpha_curve_idx];
 				}
 			}
 			if(glut_done && gaba_done){
@@ -142,19 +343,98 @@ public abstract class Spiking_Node extends Node{
 	}
 	
 	/**
-	 * The alpha curves are calculated once at the start of an experiment and shared between all instances rather that having to be repeatedly calculated throughout the runs.
+	 * Switches between summing the alpha curves over the spike history in calc_output() and the constant time recursive update of calc_recursive_output().
+	 * The recursive state is rebuilt from the spike history when it is switched on so the mode can be changed part way through a trial.
+	 * @param recursive
 	 */
-	protected static void calc_alpha_curve(){
-		_glut_alpha_curve = null;
-		_gaba_alpha_curve = null;
-		_glut_alpha_curve = new Double[_max_act_durr * (int)Math.ceil(_lambda_glut)];
-		_gaba_alpha_curve = new Double[_max_act_durr * (int)Math.ceil(_lambda_gaba)];
-		for(int i = 0; i < _glut_alpha_curve.length; i++){
-			_glut_alpha_curve[i] = ((double)i / _lambda_glut) * Math.exp(1 - (double)i / _lambda_glut);
+	public void set_recursive_output(boolean recursive){
+		_recursive_output = recursive;
+		rebuild_traces();
+		_quiet = false;
+		return;
+	}
+	
+	private void rebuild_traces(){
+		clear_traces();
+		if(_recursive_output){
+			for(int i = 0; i < _spike_times.size(); i++){
+				int n = (_t[0] - _spike_times.get(i)) + 1;
+				_glut_trace[0] += Math.pow(_glut_decay, n);
+				_glut_trace[1] += n * Math.pow(_glut_decay, n);
+				_gaba_trace[0] += Math.pow(_gaba_decay, n);
+				_gaba_trace[1] += n * Math.pow(_gaba_decay, n);
+			}
 		}
-		for(int i = 0; i < _gaba_alpha_curve.length; i++){
-			_gaba_alpha_curve[i] = ((double)i / _lambda_gaba) * Math.exp(1 - (double)i / _lambda_gaba);
+	}
+	
+	public boolean recursive_output(){
+		return _recursive_output;
+	}
+	
+	/**
+	 * The alpha curve (n/lambda)*e^(1-n/lambda) can be written as (e/lambda)*n*r^n with r = e^(-1/lambda). Summed over the recent spikes, A = sum(r^n) and B = sum(n*r^n)
+	 * obey the recurrence A' = r*A and B' = r*(B + A), with a new spike adding r to both. The output is then (e/lambda)*B no matter how many spikes are live.
+	 * An exponential kernel only needs A. See Kernel_Table.scale().
+	 * The result differs from calc_output() only by the curve values calc_output() drops below _min_alpha_value and by rounding, and stays within _recursive_output_tolerance.
+	 */
+	protected void calc_recursive_output(){
+		double spike = did_spike() ? 1.0 : 0.0;
+		_glut_trace[1] = _glut_decay * (_glut_trace[1] + _glut_trace[0] + spike);
+		_glut_trace[0] = _glut_decay * (_glut_trace[0] + spike);
+		_gaba_trace[1] = _gaba_decay * (_gaba_trace[1] + _gaba_trace[0] + spike);
+		_gaba_trace[0] = _gaba_decay * (_gaba_trace[0] + spike);
+		_glut_output[0] += _glut_scale * _glut_trace[_glut_kernel.shape() == Kernel_Table.Shape.ALPHA ? 1 : 0];
+		_gaba_output[0] += _gaba_scale * _gaba_trace[_gaba_kernel.shape() == Kernel_Table.Shape.ALPHA ? 1 : 0];
+	}
+	
+	private void clear_traces(){
+		_glut_trace[0] = 0.0;
+		_glut_trace[1] = 0.0;
+		_gaba_trace[0] = 0.0;
+		_gaba_trace[1] = 0.0;
+	}
+	
+	/**
+	 * The kernel tables are shared between all nodes using the same kernel rather that having to be repeatedly calculated throughout the runs, see Kernel_Table.
+	 * By default both transmitters use an alpha curve, with a time constant of _lambda_glut for glutamate and _lambda_gaba for GABA.
+	 * The spike history is extended if needed so that it still covers the longer of the two kernels.
+	 * @param glut_kernel
+	 * @param gaba_kernel
+	 */
+	public void set_kernels(Kernel_Table glut_kernel, Kernel_Table gaba_kernel){
+		use_kernels(glut_kernel, gaba_kernel);
+		Spike_History history = spike_history();
+		int horizon = spike_horizon();
+		if(history.horizon() > 0 && history.horizon() < horizon){
+			history.configure(Math.max(history.capacity(), horizon), horizon);
 		}
+		rebuild_traces();
+		_quiet = false;
+		return;
+	}
+	
+	private void use_kernels(Kernel_Table glut_kernel, Kernel_Table gaba_kernel){
+		_glut_kernel = glut_kernel;
+		_gaba_kernel = gaba_kernel;
+		_glut_decay = glut_kernel.decay();
+		_gaba_decay = gaba_kernel.decay();
+		_glut_scale = glut_kernel.scale();
+		_gaba_scale = gaba_kernel.scale();
+	}
+	
+	public Kernel_Table glut_kernel(){
+		return _glut_kernel;
+	}
+	
+	public Kernel_Table gaba_kernel(){
+		return _gaba_kernel;
+	}
+	
+	/**
+	 * @return the number of time steps after which a spike no longer contributes to either output
+	 */
+	protected int spike_horizon(){
+		return Math.max(_glut_kernel.length(), _gaba_kernel.length());
 	}
 	
 	/**
@@ -163,6 +443,7 @@ public abstract class Spiking_Node extends Node{
 	 */
 	public void DEBUG_set_glut_output(double d){
 		_glut_output[0] = d;
+		_quiet = false;
 		return;
 	}
 	
@@ -172,6 +453,7 @@ public abstract class Spiking_Node extends Node{
 	 */
 	public void DEBUG_set_gaba_output(double d){
 		_gaba_output[0] = d;
+		_quiet = false;
 		return;
 	}
 	
@@ -179,7 +461,7 @@ public abstract class Spiking_Node extends Node{
 	 * @return true if the node underwent a spike during the most recent time step.
 	 */
 	public boolean did_spike(){
-		if(_spike_times.size() > 0 && _spike_times.getFirst() == _t[0]){
+		if(_spike_times.size() > 0 && _spike_times.last_spike_time() == _t[0]){
 			return true;
 		}
 		else{
@@ -187,7 +469,55 @@ public abstract class Spiking_Node extends Node{
 		}
 	}
 	
-	public LinkedList<Integer> DEBUG_get_spike_times(){
+	/**
+	 * By default a neuron retains the spikes that still contribute to its output. A longer history can be kept for analysis by raising the capacity and horizon.
+	 * @param capacity the largest number of spikes retained
+	 * @param horizon the number of time steps a spike is retained for. Use 0 to keep spikes until the capacity is reached.
+	 */
+	public void set_spike_history(int capacity, int horizon){
+		spike_history().configure(Math.max(capacity, 1), horizon > 0 ? Math.max(horizon, spike_horizon()) : 0);
+		return;
+	}
+	
+	public Spike_History spike_history(){
 		return _spike_times;
 	}
+	
+	/**
+	 * @param t0
+	 * @param t1
+	 * @return the retained spike times in the interval [t0, t1), oldest first.
+	 */
+	public int[] spikes_in(int t0, int t1){
+		return spike_history().spikes_in(t0, t1);
+	}
+	
+	/**
+	 * @param t
+	 * @return the number of retained spikes at or after time t.
+	 */
+	public int count_spikes_since(int t){
+		return spike_history().count_since(t);
+	}
+	
+	/**
+	 * @return the time of the most recent spike or -1 if the node has not spiked.
+	 */
+	public int last_spike_time(){
+		return spike_history().last_spike_time();
+	}
+	
+	/**
+	 * @deprecated the spike history is no longer a list. Use spikes_in(), count_spikes_since() or last_spike_time() instead.
+	 * @return a copy of the retained spike times, most recent first.
+	 */
+	@Deprecated
+	public LinkedList<Integer> DEBUG_get_spike_times(){
+		Spike_History history = spike_history();
+		LinkedList<Integer> out = new LinkedList<Integer>();
+		for(int i = 0; i < history.size(); i++){
+			out.addLast(history.get(i));
+		}
+		return out;
+	}
 }
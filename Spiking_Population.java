@@ -0,0 +1,685 @@
+package model;
+
+import java.util.*;
+
+/**
+ * A population of spiking neurons of a single kind, given by a Neuron_Type. Rather than keeping one Spiking_Node object per neuron, the state of every neuron is stored in contiguous primitive columns
+ * and the whole population is advanced by a single call to step_all(), which reproduces the step() equations of Spiking_Node.
+ * The thalamic two mode behavior is captured by _b_1, _b_2 and _b_threshold. For the other neuron types _b_1 and _b_2 both hold _b so the usual equation results.
+ * All the neurons of a population share one clock, see Neuron_Population for the parts shared with Float_Population. Node based code can still read or write an individual neuron through the lightweight views returned by node().
+ * @author Scaed
+ *
+ */
+public class Spiking_Population extends Neuron_Population {
+
+	protected final double[] _membrane_potential;
+	protected final double[] _u;
+	protected final double[] _input;
+	protected final double[] _glut_output;
+	protected final double[] _gaba_output;
+
+	protected final double _mp_spike_threshold;
+	protected final double _u_spike_threshold_factor;
+	protected final double _mp_rest;
+	protected final double _mp_rest_u;
+	protected final double _threshold;
+	protected final double _reset;
+	protected final double _u_spike_add;
+	protected final double _k;
+	protected final double _C;
+	protected final double _a;
+	protected final double _b_1;
+	protected final double _b_2;
+	protected final double _b_threshold;
+
+	protected boolean _recursive_output = false;
+	protected double[][] _glut_trace; //recursive kernel state of each neuron, see Spiking_Node.calc_recursive_output()
+	protected double[][] _gaba_trace;
+	private double _glut_decay;
+	private double _gaba_decay;
+	private double _glut_scale;
+	private double _gaba_scale;
+
+	private Population_Node[] _views;
+	private double[] _noise; //scratch space for the SIMD kernel
+	private boolean[] _spiked;
+	private int[] _active_sources; //neurons with non-zero transmitter output, in index order, see update_active_sources()
+	private int _active_count = 0;
+	private Delay_Buffer _delay_buffer; //input sent along delayed connections and projections, see ensure_delay()
+	private boolean _fast_forward = false;
+	private static final int _quiet_block = 64; //neurons skipped together by the SIMD kernel, see integrate_vectorized()
+	private boolean[] _quiet; //neurons at a fixed point with no output, see set_fast_forward()
+	private boolean _all_quiet_known = false; //whether _all_quiet matches _quiet
+	private boolean _all_quiet = false;
+	private boolean _idle = false; //the integration of the current time step is skipped
+	boolean _input_touched = true; //set whenever input may have been added since the last advance_clock()
+
+	/**
+	 * @param size the number of neurons in the population
+	 * @param type the parameters of the kind of neuron, see Neuron_Type
+	 */
+	protected Spiking_Population(int size, Neuron_Type type){
+		super(size, type);
+		_mp_spike_threshold = type.mp_spike_threshold();
+		_u_spike_threshold_factor = type.u_spike_threshold_factor();
+		_mp_rest = type.mp_rest();
+		_mp_rest_u = type.mp_rest_u();
+		_threshold = type.threshold();
+		_reset = type.reset();
+		_u_spike_add = type.u_spike_add();
+		_k = type.k();
+		_C = type.C();
+		_a = type.a();
+		_b_1 = type.b_1();
+		_b_2 = type.b_2();
+		_b_threshold = type.b_threshold();
+		use_decay();
+
+		_membrane_potential = new double[size];
+		_u = new double[size];
+		_input = new double[size];
+		_glut_output = new double[size];
+		_gaba_output = new double[size];
+		reset_population();
+	}
+
+	/**
+	 * @param type
+	 * @param size the number of neurons in the population
+	 * @return a population of neurons of the given type, which can be any registered or loaded Neuron_Type
+	 */
+	public static Spiking_Population of(Neuron_Type type, int size){
+		return new Spiking_Population(size, type);
+	}
+
+	/**
+	 * @param size the number of neurons in the population
+	 * @return a population of neurons with the parameters of Spiking_Pyramidal_Node
+	 */
+	public static Spiking_Population pyramidal(int size){
+		return new Spiking_Population(size, Neuron_Type.PYRAMIDAL);
+	}
+
+	/**
+	 * @param size the number of neurons in the population
+	 * @return a population of neurons with the parameters of Spiking_Striatal_Node
+	 */
+	public static Spiking_Population striatal(int size){
+		return new Spiking_Population(size, Neuron_Type.STRIATAL);
+	}
+
+	/**
+	 * @param size the number of neurons in the population
+	 * @return a population of neurons with the parameters of Spiking_GP_Node
+	 */
+	public static Spiking_Population gp(int size){
+		return new Spiking_Population(size, Neuron_Type.GP);
+	}
+
+	/**
+	 * @param size the number of neurons in the population
+	 * @return a population of neurons with the parameters of Spiking_Thalamic_Node
+	 */
+	public static Spiking_Population thalamic(int size){
+		return new Spiking_Population(size, Neuron_Type.THALAMIC);
+	}
+
+	/**
+	 * Creates a population of the same kind and settings as this one, with its own state and noise seed.
+	 * @return a new population in its reset state
+	 */
+	public Spiking_Population replicate(){
+		Spiking_Population p = new Spiking_Population(_size, _type);
+		copy_settings_to(p);
+		p.set_recursive_output(_recursive_output);
+		p.set_vectorized(_vectorized);
+		p.set_fast_forward(_fast_forward);
+		if(_delay_buffer != null){
+			p.ensure_delay(_delay_buffer.max_delay());
+		}
+		return p;
+	}
+
+	/**
+	 * Also clears the delayed input of the population.
+	 */
+	public void reset_population(){
+		super.reset_population();
+		if(_delay_buffer != null){
+			_delay_buffer.clear();
+		}
+		wake();
+	}
+
+	/**
+	 * Resets a single neuron to its resting state. The clock is shared by the whole population and so is left unchanged.
+	 * @param i
+	 */
+	public void reset_neuron(int i){
+		_input[i] = 0.0;
+		_glut_output[i] = 0.0;
+		_gaba_output[i] = 0.0;
+		_u[i] = Spiking_Node._u_rest;
+		_membrane_potential[i] = _mp_rest;
+		_spike_times[i].clear();
+		if(_recursive_output){
+			_glut_trace[0][i] = 0.0;
+			_glut_trace[1][i] = 0.0;
+			_gaba_trace[0][i] = 0.0;
+			_gaba_trace[1][i] = 0.0;
+		}
+		if(_delay_buffer != null){
+			_delay_buffer.clear(i);
+		}
+		if(_quiet != null){
+			_quiet[i] = false;
+			_all_quiet_known = false;
+		}
+		_input_touched = true;
+	}
+
+	/**
+	 * With fast-forward on, this is also where the population decides whether the whole time step can be skipped, see set_fast_forward().
+	 */
+	public void advance_clock(){
+		super.advance_clock();
+		if(_delay_buffer != null){
+			_delay_buffer.advance();
+		}
+		if(_fast_forward){
+			if(!_all_quiet_known){
+				_all_quiet = quiet_count() == _size;
+			}
+			_idle = _all_quiet && !_input_touched && (_delay_buffer == null || !_delay_buffer.has_pending());
+			_all_quiet_known = _idle; //the quiet flags only change when neurons are integrated
+			_input_touched = false;
+		}
+		return;
+	}
+
+	/**
+	 * The delayed input that arrives in this time step is added to the input of each neuron first.
+	 * @param from
+	 * @param to
+	 */
+	public void integrate(int from, int to){
+		if(_idle){
+			return;
+		}
+		if(_delay_buffer != null){
+			_delay_buffer.take(_input, from, to);
+		}
+		if(_vectorized){
+			integrate_vectorized(from, to);
+			return;
+		}
+		if(_fast_forward){
+			final boolean[] quiet = _quiet;
+			final double[] input = _input;
+			for(int i = from; i < to; i++){
+				if(!quiet[i] || input[i] != 0.0){
+					integrate_tracked(i);
+				}
+			}
+			return;
+		}
+		if(_noise_stdv == 0.0){
+			for(int i = from; i < to; i++){
+				integrate(i, 0.0);
+			}
+			return;
+		}
+		for(int i = from; i < to; i++){
+			integrate(i, noise(i));
+		}
+	}
+
+	/**
+	 * Advances neuron i by a single time step with the given noise.
+	 * @param i
+	 * @param _err
+	 */
+	private void integrate(int i, double _err){
+		final double[] mp = _membrane_potential;
+		final double[] u = _u;
+		final double[] input = _input;
+		double u_change;
+		if(mp[i] <= _b_threshold){
+			u_change = _a * (_b_1 * (mp[i] - _mp_rest_u) - u[i]);
+		}
+		else{
+			u_change = _a * (_b_2 * (mp[i] - _mp_rest_u) - u[i]);
+		}
+		double mp_change = ((_k * (mp[i] - _mp_rest) * (mp[i] - _threshold)) - u[i] + input[i] + _err) / _C;
+
+		input[i] = 0.0;
+		_glut_output[i] = 0.0;
+		_gaba_output[i] = 0.0;
+		mp[i] += mp_change;
+		u[i] += u_change;
+
+		if(mp[i] >= (_mp_spike_threshold + (_u_spike_threshold_factor * u[i]))){
+			record_spike(i);
+			mp[i] = _reset - (_u_spike_threshold_factor * u[i]);
+			u[i] += _u_spike_add;
+		}
+
+		calc_output(i);
+	}
+
+	/**
+	 * Integrates neuron i, which must be noise free, and records whether it is now quiet: it had no input, its membrane potential and u are bit for bit unchanged
+	 * and it has no transmitter output. Stepping a quiet neuron with no input changes nothing, so it can be skipped until input arrives.
+	 * @param i
+	 */
+	private void integrate_tracked(int i){
+		final double mp = _membrane_potential[i];
+		final double u = _u[i];
+		final boolean no_input = _input[i] == 0.0;
+		integrate(i, 0.0);
+		_quiet[i] = no_input && Double.doubleToRawLongBits(mp) == Double.doubleToRawLongBits(_membrane_potential[i])
+				&& Double.doubleToRawLongBits(u) == Double.doubleToRawLongBits(_u[i]) && no_output(i);
+	}
+
+	/**
+	 * @param i
+	 * @return true if neuron i has no transmitter output and, with recursive output, no trace left that would give it one.
+	 */
+	private boolean no_output(int i){
+		if(_glut_output[i] != 0.0 || _gaba_output[i] != 0.0){
+			return false;
+		}
+		return !_recursive_output || (_glut_trace[0][i] == 0.0 && _glut_trace[1][i] == 0.0 && _gaba_trace[0][i] == 0.0 && _gaba_trace[1][i] == 0.0);
+	}
+
+	/**
+	 * The noise is drawn first so the random numbers used match integrate(). Vector_Kernel then updates whole vectors of neurons at a time
+	 * and the spikes it finds are recorded afterwards. Neurons left over at the end of the range are integrated one by one.
+	 * With fast-forward on, the range is split into blocks of _quiet_block neurons and blocks in which every neuron is quiet with no input are skipped.
+	 */
+	private void integrate_vectorized(int from, int to){
+		if(!_fast_forward){
+			integrate_block(from, to);
+			return;
+		}
+		final boolean[] quiet = _quiet;
+		final double[] input = _input;
+		for(int start = from; start < to; start += _quiet_block){
+			int end = Math.min(start + _quiet_block, to);
+			for(int i = start; i < end; i++){
+				if(!quiet[i] || input[i] != 0.0){
+					integrate_block(start, end);
+					break;
+				}
+			}
+		}
+	}
+
+	private void integrate_block(int from, int to){
+		if(_noise_stdv != 0.0){ //otherwise _noise is left at 0.0
+			for(int i = from; i < to; i++){
+				_noise[i] = noise(i);
+			}
+		}
+		int done = Vector_Kernel.integrate(this, from, to, _noise, _spiked, _fast_forward ? _quiet : null);
+		for(int i = from; i < done; i++){
+			if(_spiked[i]){
+				record_spike(i);
+			}
+			calc_output(i);
+			if(_fast_forward && _quiet[i]){
+				_quiet[i] = no_output(i);
+			}
+		}
+		for(int i = done; i < to; i++){
+			if(_fast_forward){
+				integrate_tracked(i);
+			}
+			else{
+				integrate(i, _noise[i]);
+			}
+		}
+	}
+
+	/**
+	 * Switches the integration of the population between the per neuron loop and the SIMD kernel of Vector_Kernel. Both give identical results.
+	 * The SIMD kernel needs the jdk.incubator.vector module, which must be added to the JVM with --add-modules jdk.incubator.vector.
+	 * If the module is not available the population stays with the per neuron loop.
+	 * @param vectorized
+	 * @return true if the SIMD kernel is in use
+	 */
+	public boolean set_vectorized(boolean vectorized){
+		_vectorized = vectorized && _vector_api_available;
+		if(_vectorized && _noise == null){
+			_noise = new double[_size];
+			_spiked = new boolean[_size];
+		}
+		return _vectorized;
+	}
+
+	/**
+	 * Switches quiescent fast-forward on or off. A neuron is quiet once a time step with no input leaves its membrane potential and u bit for bit unchanged
+	 * and it has no transmitter output, which is where noise free neurons settle when nothing drives them. Stepping a quiet neuron again changes nothing,
+	 * so with fast-forward on quiet neurons are skipped until input reaches them, and while every neuron is quiet and no input or delayed input has arrived
+	 * the integration of the whole population is skipped and only the shared clock moves. The results are bit-identical to running without fast-forward.
+	 * Populations with noise never settle, so fast-forward is only used by noise free populations.
+	 * @param fast_forward
+	 * @return true if fast-forward is in use
+	 */
+	public boolean set_fast_forward(boolean fast_forward){
+		_fast_forward = fast_forward && _noise_stdv == 0.0;
+		if(_fast_forward && _quiet == null){
+			_quiet = new boolean[_size];
+		}
+		wake();
+		return _fast_forward;
+	}
+
+	public boolean is_fast_forward(){
+		return _fast_forward;
+	}
+
+	/**
+	 * @return the number of neurons that are quiet, see set_fast_forward().
+	 */
+	public int quiet_count(){
+		if(_quiet == null){
+			return 0;
+		}
+		int count = 0;
+		for(boolean q : _quiet){
+			if(q){
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return true if the integration of the current time step was skipped because the whole population is quiet.
+	 */
+	public boolean is_idle(){
+		return _idle;
+	}
+
+	/**
+	 * Marks every neuron as not quiet, so the next time step integrates them all. Needed when the state of the population is changed directly, see Network_Snapshot.
+	 */
+	public void wake(){
+		if(_quiet != null){
+			Arrays.fill(_quiet, false);
+		}
+		_all_quiet_known = false;
+		_idle = false;
+		_input_touched = true;
+		return;
+	}
+
+	/**
+	 * This is the calc_output() method of Spiking_Node applied to neuron i.
+	 * @param i
+	 */
+	protected void calc_output(int i){
+		if(_recursive_output){
+			calc_recursive_output(i);
+			return;
+		}
+		final double[] glut_curve = _glut_kernel.values();
+		final double[] gaba_curve = _gaba_kernel.values();
+		final Spike_History times = _spike_times[i];
+		final int count = times.size();
+		boolean glut_done = false;
+		boolean gaba_done = false;
+		double glut = 0.0;
+		double gaba = 0.0;
+		for(int s = 0; s < count; s++){
+			int alpha_curve_idx = (_t - times.get(s)) + 1;
+			if(!glut_done){
+				if(alpha_curve_idx >= glut_curve.length){
+					glut_done = true;
+				}
+				else{
+					glut += glut_curve[alpha_curve_idx];
+				}
+			}
+			if(!gaba_done){
+				if(alpha_curve_idx >= gaba_curve.length){
+					gaba_done = true;
+				}
+				else{
+					gaba += gaba_curve[alpha_curve_idx];
+				}
+			}
+			if(glut_done && gaba_done){
+				break;
+			}
+		}
+		_glut_output[i] += glut;
+		_gaba_output[i] += gaba;
+	}
+
+	/**
+	 * This is the calc_recursive_output() method of Spiking_Node applied to neuron i.
+	 * @param i
+	 */
+	protected void calc_recursive_output(int i){
+		double spike = did_spike(i) ? 1.0 : 0.0;
+		_glut_trace[1][i] = _glut_decay * (_glut_trace[1][i] + _glut_trace[0][i] + spike);
+		_glut_trace[0][i] = _glut_decay * (_glut_trace[0][i] + spike);
+		_gaba_trace[1][i] = _gaba_decay * (_gaba_trace[1][i] + _gaba_trace[0][i] + spike);
+		_gaba_trace[0][i] = _gaba_decay * (_gaba_trace[0][i] + spike);
+		_glut_output[i] += _glut_scale * _glut_trace[_glut_kernel.shape() == Kernel_Table.Shape.ALPHA ? 1 : 0][i];
+		_gaba_output[i] += _gaba_scale * _gaba_trace[_gaba_kernel.shape() == Kernel_Table.Shape.ALPHA ? 1 : 0][i];
+	}
+
+	/**
+	 * Also recalculates the recursive output from the new kernels.
+	 * @param glut_kernel
+	 * @param gaba_kernel
+	 */
+	public void set_kernels(Kernel_Table glut_kernel, Kernel_Table gaba_kernel){
+		super.set_kernels(glut_kernel, gaba_kernel);
+		use_decay();
+		set_recursive_output(_recursive_output);
+		return;
+	}
+
+	/**
+	 * Takes the decay and scale of the recursive output from the current kernels.
+	 */
+	private void use_decay(){
+		_glut_decay = _glut_kernel.decay();
+		_gaba_decay = _gaba_kernel.decay();
+		_glut_scale = _glut_kernel.scale();
+		_gaba_scale = _gaba_kernel.scale();
+	}
+
+	/**
+	 * Switches every neuron of the population between the table and recursive calculation of its output. See Spiking_Node.set_recursive_output().
+	 * @param recursive
+	 */
+	public void set_recursive_output(boolean recursive){
+		_recursive_output = recursive;
+		wake();
+		if(!recursive){
+			_glut_trace = null;
+			_gaba_trace = null;
+			return;
+		}
+		_glut_trace = new double[2][_size];
+		_gaba_trace = new double[2][_size];
+		for(int i = 0; i < _size; i++){
+			Spike_History history = _spike_times[i];
+			for(int s = 0; s < history.size(); s++){
+				int n = (_t - history.get(s)) + 1;
+				_glut_trace[0][i] += Math.pow(_glut_decay, n);
+				_glut_trace[1][i] += n * Math.pow(_glut_decay, n);
+				_gaba_trace[0][i] += Math.pow(_gaba_decay, n);
+				_gaba_trace[1][i] += n * Math.pow(_gaba_decay, n);
+			}
+		}
+		return;
+	}
+
+	public boolean recursive_output(){
+		return _recursive_output;
+	}
+
+	public double input(int i){
+		return _input[i];
+	}
+
+	public void set_input_to(int i, double d){
+		_input[i] = d;
+		_input_touched = true;
+		return;
+	}
+
+	public void raise_input_by(int i, double d){
+		_input[i] += d;
+		if(d != 0.0){
+			_input_touched = true;
+		}
+		return;
+	}
+
+	/**
+	 * Increase the input of neuron i by d after a delay. The input arrives delay time steps after the next step of the population,
+	 * so a delay of 0 is the same as raise_input_by(i, d).
+	 * @param i
+	 * @param d
+	 * @param delay the delay in time steps
+	 */
+	public void raise_input_by(int i, double d, int delay){
+		if(delay == 0){
+			raise_input_by(i, d);
+			return;
+		}
+		if(_delay_buffer == null || delay > _delay_buffer.max_delay()){
+			ensure_delay(delay);
+		}
+		_delay_buffer.add(i, delay, d);
+		return;
+	}
+
+	/**
+	 * Makes room for input delayed by up to max_delay time steps. One buffer of (max_delay + 1) * size() values holds the delayed input of the whole population,
+	 * however many connections and projections write into it. Delayed connections and projections call this when their delays are set.
+	 * @param max_delay
+	 */
+	public void ensure_delay(int max_delay){
+		if(_delay_buffer == null){
+			_delay_buffer = new Delay_Buffer(_size, max_delay);
+			_delay_buffer.set_now(_t);
+		}
+		else{
+			_delay_buffer.ensure_delay(max_delay);
+		}
+		return;
+	}
+
+	/**
+	 * @return the buffer holding the delayed input of the population, or null if nothing delayed has targeted it.
+	 */
+	Delay_Buffer delay_buffer(){
+		return _delay_buffer;
+	}
+
+	public double membrane_potential(int i){
+		return _membrane_potential[i];
+	}
+
+	public double u(int i){
+		return _u[i];
+	}
+
+	public double glut_output(int i){
+		return _glut_output[i];
+	}
+
+	public double gaba_output(int i){
+		return _gaba_output[i];
+	}
+
+	/**
+	 * This method is prefixed with DEBUG as it should not need to be used in the collection of data
+	 * @param i
+	 * @param d
+	 */
+	public void DEBUG_set_glut_output(int i, double d){
+		_glut_output[i] = d;
+		wake();
+		return;
+	}
+
+	/**
+	 * This method is prefixed with DEBUG as it should not need to be used in the collection of data
+	 * @param i
+	 * @param d
+	 */
+	public void DEBUG_set_gaba_output(int i, double d){
+		_gaba_output[i] = d;
+		wake();
+		return;
+	}
+
+	/**
+	 * Finds the neurons whose glutamate or GABA output is not zero. Only these neurons have anything to deliver through their outgoing synapses,
+	 * which allows event driven delivery to skip the synapses of silent neurons. This should be called once per time step, after integration and before delivery.
+	 * @return the number of active neurons
+	 */
+	public int update_active_sources(){
+		if(_active_sources == null){
+			_active_sources = new int[_size];
+		}
+		int count = 0;
+		for(int i = 0; i < _size; i++){
+			if(_glut_output[i] != 0.0 || _gaba_output[i] != 0.0){
+				_active_sources[count++] = i;
+			}
+		}
+		_active_count = count;
+		return count;
+	}
+
+	/**
+	 * @return the number of active neurons found by the last call to update_active_sources()
+	 */
+	public int active_source_count(){
+		return _active_count;
+	}
+
+	/**
+	 * @param k
+	 * @return the index of the k-th active neuron found by the last call to update_active_sources()
+	 */
+	public int active_source(int k){
+		return _active_sources[k];
+	}
+
+	/**
+	 * Views are created the first time they are requested and reused afterwards.
+	 * @param i
+	 * @return a Spiking_Node view of neuron i that reads and writes the columns of this population.
+	 */
+	public Population_Node node(int i){
+		if(_views == null){
+			_views = new Population_Node[_size];
+		}
+		if(_views[i] == null){
+			_views[i] = new Population_Node(this, i);
+		}
+		return _views[i];
+	}
+
+	/**
+	 * @return views of every neuron of the population, in index order.
+	 */
+	public Population_Node[] nodes(){
+		Population_Node[] out = new Population_Node[_size];
+		for(int i = 0; i < _size; i++){
+			out[i] = node(i);
+		}
+		return out;
+	}
+}
@@ -0,0 +1,292 @@
+package model;
+
+import java.util.*;
+
+/**
+ * Records chosen state variables of chosen neurons while a Network runs, see Network.add_probe().
+ * A probe either keeps every decimation-th value (decimating mode) or the minimum, maximum and mean of every window of time steps (window mode).
+ * Samples are kept in primitive ring buffers that are allocated once, when the first sample is taken, so sampling does not allocate.
+ * Once the capacity is reached the oldest sample is overwritten. A network with no probes attached does no sampling work at all.
+ * Each probed neuron and variable is a channel: channel c is variable c % variable_count() of the (c / variable_count())th neuron added.
+ * @author Scaed
+ *
+ */
+public class State_Probe {
+
+	public enum Variable { MEMBRANE_POTENTIAL, U, GLUT_OUTPUT, GABA_OUTPUT }
+
+	private final Variable[] _variables;
+	private final int _period;
+	private final boolean _window;
+	private final int _capacity;
+
+	private final ArrayList<Spiking_Node> _node_targets = new ArrayList<Spiking_Node>();
+	private final ArrayList<Neuron_Population> _population_targets = new ArrayList<Neuron_Population>();
+	private final ArrayList<int[]> _population_indices = new ArrayList<int[]>();
+	private int _neuron_count = 0;
+
+	private int _channels;
+	private double[] _current; //the values read this time step, by channel
+	private double[] _values; //decimating mode: ring of samples; window mode: the means
+	private double[] _min;
+	private double[] _max;
+	private double[] _acc_min;
+	private double[] _acc_max;
+	private double[] _acc_sum;
+	private int[] _times;
+	private int _start = 0; //slot of the oldest sample
+	private int _size = 0;
+	private int _ticks = 0; //time steps seen in the current period
+
+	private State_Probe(Variable[] variables, int period, boolean window, int capacity){
+		_variables = variables.clone();
+		_period = Math.max(period, 1);
+		_window = window;
+		_capacity = Math.max(capacity, 1);
+	}
+
+	/**
+	 * @param variables the variables recorded for every neuron
+	 * @param decimation one value is kept every decimation time steps
+	 * @param capacity the number of samples retained
+	 * @return a probe that keeps every decimation-th value
+	 */
+	public static State_Probe decimating(Variable[] variables, int decimation, int capacity){
+		return new State_Probe(variables, decimation, false, capacity);
+	}
+
+	/**
+	 * @param variables the variables recorded for every neuron
+	 * @param window the number of time steps summarised by each sample
+	 * @param capacity the number of samples retained
+	 * @return a probe that keeps the minimum, maximum and mean of each window
+	 */
+	public static State_Probe window(Variable[] variables, int window, int capacity){
+		return new State_Probe(variables, window, true, capacity);
+	}
+
+	/**
+	 * Adds a neuron to the probe. A view of a neuron of a population is probed through its population.
+	 * @param n
+	 */
+	public void add_node(Spiking_Node n){
+		if(n instanceof Population_Node){
+			add_neurons(((Population_Node)n).get_population(), new int[]{((Population_Node)n).get_index()});
+			return;
+		}
+		check_not_started();
+		_node_targets.add(n);
+		_neuron_count++;
+		return;
+	}
+
+	/**
+	 * Adds every neuron of a population to the probe.
+	 * @param p a double or single precision population
+	 */
+	public void add_population(Neuron_Population p){
+		int[] all = new int[p.size()];
+		for(int i = 0; i < all.length; i++){
+			all[i] = i;
+		}
+		add_neurons(p, all);
+		return;
+	}
+
+	/**
+	 * Adds the chosen neurons of a population to the probe.
+	 * @param p a double or single precision population
+	 * @param indices
+	 */
+	public void add_neurons(Neuron_Population p, int[] indices){
+		check_not_started();
+		_population_targets.add(p);
+		_population_indices.add(indices.clone());
+		_neuron_count += indices.length;
+		return;
+	}
+
+	private void check_not_started(){
+		if(_current != null){
+			throw new IllegalStateException("Neurons cannot be added to a probe once it has started sampling.");
+		}
+	}
+
+	private void allocate(){
+		_channels = _neuron_count * _variables.length;
+		_current = new double[_channels];
+		_values = new double[_capacity * _channels];
+		_times = new int[_capacity];
+		if(_window){
+			_min = new double[_capacity * _channels];
+			_max = new double[_capacity * _channels];
+			_acc_min = new double[_channels];
+			_acc_max = new double[_channels];
+			_acc_sum = new double[_channels];
+			clear_window();
+		}
+	}
+
+	/**
+	 * Called by the network after every time step.
+	 * @param t the time of the step
+	 */
+	public void sample(int t){
+		if(_current == null){
+			allocate();
+		}
+		_ticks++;
+		if(!_window){
+			if(_ticks < _period){
+				return;
+			}
+			read(_current);
+			System.arraycopy(_current, 0, _values, next_slot(t) * _channels, _channels);
+			_ticks = 0;
+			return;
+		}
+		read(_current);
+		for(int c = 0; c < _channels; c++){
+			double v = _current[c];
+			if(v < _acc_min[c]){
+				_acc_min[c] = v;
+			}
+			if(v > _acc_max[c]){
+				_acc_max[c] = v;
+			}
+			_acc_sum[c] += v;
+		}
+		if(_ticks == _period){
+			int offset = next_slot(t) * _channels;
+			for(int c = 0; c < _channels; c++){
+				_min[offset + c] = _acc_min[c];
+				_max[offset + c] = _acc_max[c];
+				_values[offset + c] = _acc_sum[c] / _period;
+			}
+			clear_window();
+		}
+	}
+
+	/**
+	 * @return the slot the sample taken at time t is stored in, overwriting the oldest sample if the probe is full
+	 */
+	private int next_slot(int t){
+		int slot;
+		if(_size < _capacity){
+			slot = (_start + _size) % _capacity;
+			_size++;
+		}
+		else{
+			slot = _start;
+			_start = (_start + 1) % _capacity;
+		}
+		_times[slot] = t;
+		return slot;
+	}
+
+	private void clear_window(){
+		Arrays.fill(_acc_min, Double.POSITIVE_INFINITY);
+		Arrays.fill(_acc_max, Double.NEGATIVE_INFINITY);
+		Arrays.fill(_acc_sum, 0.0);
+		_ticks = 0;
+	}
+
+	private void read(double[] into){
+		int c = 0;
+		for(Spiking_Node n : _node_targets){
+			for(Variable v : _variables){
+				into[c++] = value_of(n, v);
+			}
+		}
+		for(int p = 0; p < _population_targets.size(); p++){
+			Neuron_Population population = _population_targets.get(p);
+			for(int i : _population_indices.get(p)){
+				for(Variable v : _variables){
+					into[c++] = value_of(population, i, v);
+				}
+			}
+		}
+	}
+
+	private static double value_of(Spiking_Node n, Variable v){
+		switch(v){
+			case MEMBRANE_POTENTIAL: return n._membrane_potential[0];
+			case U: return n._u[0];
+			case GLUT_OUTPUT: return n._glut_output[0];
+			default: return n._gaba_output[0];
+		}
+	}
+
+	private static double value_of(Neuron_Population p, int i, Variable v){
+		switch(v){
+			case MEMBRANE_POTENTIAL: return p.membrane_potential(i);
+			case U: return p.u(i);
+			case GLUT_OUTPUT: return p.glut_output(i);
+			default: return p.gaba_output(i);
+		}
+	}
+
+	/**
+	 * Discards every sample and the partial window, keeping the neurons and the buffers.
+	 */
+	public void reset_probe(){
+		_start = 0;
+		_size = 0;
+		_ticks = 0;
+		if(_window && _current != null){
+			clear_window();
+		}
+		return;
+	}
+
+	public int variable_count(){
+		return _variables.length;
+	}
+
+	public int channel_count(){
+		return _neuron_count * _variables.length;
+	}
+
+	/**
+	 * @return the number of samples retained
+	 */
+	public int sample_count(){
+		return _size;
+	}
+
+	/**
+	 * @param s the sample, from 0 for the oldest retained to sample_count() - 1 for the newest
+	 * @return the time the sample was taken, which is the last time step of its window in window mode
+	 */
+	public int time(int s){
+		return _times[slot(s)];
+	}
+
+	/**
+	 * @param s
+	 * @param channel
+	 * @return the value of the channel in decimating mode, or the mean of the window in window mode
+	 */
+	public double value(int s, int channel){
+		return _values[slot(s) * _channels + channel];
+	}
+
+	public double mean(int s, int channel){
+		return value(s, channel);
+	}
+
+	public double min(int s, int channel){
+		return _min[slot(s) * _channels + channel];
+	}
+
+	public double max(int s, int channel){
+		return _max[slot(s) * _channels + channel];
+	}
+
+	private int slot(int s){
+		if(s < 0 || s >= _size){
+			throw new IndexOutOfBoundsException("Sample " + s + " of " + _size);
+		}
+		return (_start + s) % _capacity;
+	}
+}
@@ -11,6 +11,7 @@ import java.util.*;
 public class Synaptic_Connection extends Connection{
 	
 	private Node _receiver;
+	private int _delay = 0; //axonal delay in time steps, see set_delay()
 
 	public Synaptic_Connection(Node src, Node rcv, Double wgt){
 		_source = src;
@@ -23,20 +24,21 @@ public class Synaptic_Connection extends Connection{
 	
 	/**
 	 * This method advances the connection by one time step. It selects the signal source based on the class of the source (Spiking_Node or not) and the sign of the weight parameter (excitatory or inhibitory).
-	 * Presynaptic input is added to the signal from the source before being multiplied by the weight. Then the final signal is added to the input of the receiver.
+	 * Presynaptic input is added to the signal from the source before being multiplied by the weight. Then the final signal is added to the input of the receiver,
+	 * or to its delay buffer if the connection has a delay.
 	 */
 	public double send(){
 		double signal;
 		if(_source instanceof Spiking_Node){
 			if(_weight[0] < 0){
-				signal = ((Spiking_Node)_source).gaba_output();
+				signal = ((Spiking_Node)_source).gaba_output_value();
 			}
 			else{
-				signal = ((Spiking_Node)_source).glut_output();
+				signal = ((Spiking_Node)_source).glut_output_value();
 			}
 		}
 		else{
-			signal = _source.output();
+			signal = _source.output_value();
 		}
 		
 		signal += _presynaptc_input[0];
@@ -45,12 +47,50 @@ public class Synaptic_Connection extends Connection{
 			signal = 0.0;
 		}
 		
-		_receiver.raise_input_by(signal * _weight[0]);
+		if(_delay == 0){
+			_receiver.raise_input_by(signal * _weight[0]);
+		}
+		else{
+			_receiver.raise_input_by(signal * _weight[0], _delay);
+		}
 		_prev_signal_sent[0] = signal * _weight[0];
 		
 		return signal;
 	}
 	
+	/**
+	 * Creates a connection between src and rcv that shares the weight of this one, see Network.replicate().
+	 * @param src
+	 * @param rcv
+	 * @return the new connection
+	 */
+	public Synaptic_Connection replicate(Node src, Node rcv){
+		Synaptic_Connection c = new Synaptic_Connection(src, rcv, _weight[0]);
+		c.share_weight_with(this);
+		c.set_delay(_delay);
+		return c;
+	}
+	
+	/**
+	 * Sets the axonal delay of the connection. A signal sent with delay d reaches the receiver d time steps later than it would without one.
+	 * Delayed signals wait in a buffer owned by the receiver, which is sized here so that nothing is allocated while the network runs.
+	 * @param delay the delay in time steps
+	 */
+	public void set_delay(int delay){
+		if(delay < 0){
+			throw new IllegalArgumentException("A delay cannot be negative: " + delay);
+		}
+		if(delay > 0){
+			_receiver.ensure_delay(delay);
+		}
+		_delay = delay;
+		return;
+	}
+	
+	public int get_delay(){
+		return _delay;
+	}
+	
 	/**
 	 * There is no set() method for the receiver as it should not be changed once assigned in the constructor method.
 	 * @return
@@ -61,7 +101,7 @@ public class Synaptic_Connection extends Connection{
 
 	/**
 	 * This is a static function that probabilistically creates a set of Synaptic_Connections between a group of source nodes and a group of receiver nodes
-	 * with the weight drawn from a Gaussian distribution of chosen mean and standard deviation. 
+	 * with the weight drawn from a Gaussian distribution of chosen mean and standard deviation. A new random seed is used on every call.
 	 * @param sources the group of source nodes
 	 * @param receivers the group of receiver nodes
 	 * @param mean the mean weight of the connections created
@@ -70,17 +110,28 @@ public class Synaptic_Connection extends Connection{
 	 * @return an array of new connections between sources and receivers
 	 */
 	public static Synaptic_Connection[] connect(Node[] sources, Node[] receivers, double mean, double stdv, double prob){
+		return connect(sources, receivers, mean, stdv, prob, new Random().nextLong());
+	}
+	
+	/**
+	 * As connect() above, but reproducible: the same seed always creates the same connections. Only the connections that are created are sampled, see Connectivity.
+	 * @param sources the group of source nodes
+	 * @param receivers the group of receiver nodes
+	 * @param mean the mean weight of the connections created
+	 * @param stdv the standard deviation of the connections created
+	 * @param prob the probability that connection will be created between a given source/receiver pair  
+	 * @param seed
+	 * @return an array of new connections between sources and receivers
+	 */
+	public static Synaptic_Connection[] connect(Node[] sources, Node[] receivers, double mean, double stdv, double prob, long seed){
 		ArrayList<Synaptic_Connection> cons = new ArrayList<Synaptic_Connection>();
-		Random rng = new Random();
-		for(Node s : sources){
-			for(Node r : receivers){
-				if(rng.nextDouble() < prob){
-					double weight = (rng.nextGaussian() + mean) * stdv;
-					cons.add(new Synaptic_Connection(s, r, weight));
-				}
+		for(int i = 0; i < sources.length; i++){
+			SplittableRandom rng = Connectivity.row_rng(seed, i);
+			for(long r = Connectivity.next(rng, -1, prob); r < receivers.length; r = Connectivity.next(rng, r, prob)){
+				double weight = Connectivity.weight(rng, mean, stdv);
+				cons.add(new Synaptic_Connection(sources[i], receivers[(int)r], weight));
 			}
 		}
-		Synaptic_Connection[] out = (Synaptic_Connection[]) cons.toArray();
-		return out;
+		return cons.toArray(new Synaptic_Connection[cons.size()]);
 	}
 }
@@ -0,0 +1,116 @@
+package model;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Runs many trials of one network at the same time. The network is copied once per worker with Network.replicate(), so every replica has its own state
+ * while the connectivity and weights are shared and memory does not grow with the number of trials. Each trial takes a free replica, resets it,
+ * reseeds its noise from the seed of the runner and the trial number, runs the trial and hands the replica back.
+ * A trial therefore gives the same result whichever worker runs it. Results are passed to a Collector on the calling thread as the trials finish.
+ * @author Scaed
+ *
+ * @param <R> the result of a trial
+ */
+public class Trial_Runner<R> {
+
+	/**
+	 * A single trial. The network is reset and reseeded before the trial starts; the trial sets the input and steps the network.
+	 */
+	public interface Trial<R> {
+		R run(Network network, int trial);
+	}
+
+	/**
+	 * Receives the result of every trial, in the order the trials finish. It is only ever called from the thread that called run().
+	 */
+	public interface Collector<R> {
+		void collect(int trial, R result);
+	}
+
+	private final Network[] _replicas;
+	private final long _seed;
+
+	/**
+	 * @param prototype the network to run. It is copied and is not changed by the runner.
+	 * @param workers the number of trials run at the same time
+	 * @param seed the seed the noise of every trial is derived from
+	 * @throws IllegalStateException if the network has plasticity rules, see Network.replicate()
+	 */
+	public Trial_Runner(Network prototype, int workers, long seed){
+		_replicas = new Network[Math.max(workers, 1)];
+		for(int w = 0; w < _replicas.length; w++){
+			_replicas[w] = prototype.replicate();
+		}
+		_seed = seed;
+	}
+
+	public int get_workers(){
+		return _replicas.length;
+	}
+
+	/**
+	 * @param trial
+	 * @return the noise seed used for the given trial
+	 */
+	public long trial_seed(int trial){
+		return Connectivity.mix(_seed + 0x9E3779B97F4A7C15L * (trial + 1));
+	}
+
+	/**
+	 * Runs trials 0 to trials - 1 on a pool of get_workers() threads and waits for them to finish.
+	 * @param trials
+	 * @param trial
+	 * @param collector
+	 */
+	public void run(int trials, Trial<R> trial, Collector<R> collector){
+		final ArrayBlockingQueue<Network> free = new ArrayBlockingQueue<Network>(_replicas.length, false, Arrays.asList(_replicas));
+		ExecutorService pool = Executors.newFixedThreadPool(_replicas.length);
+		try{
+			CompletionService<Map.Entry<Integer, R>> done = new ExecutorCompletionService<Map.Entry<Integer, R>>(pool);
+			for(int t = 0; t < trials; t++){
+				final int number = t;
+				done.submit(() -> {
+					Network network = free.take();
+					try{
+						network.reset_network();
+						network.set_noise_seed(trial_seed(number));
+						return new AbstractMap.SimpleImmutableEntry<Integer, R>(number, trial.run(network, number));
+					}
+					finally{
+						free.put(network);
+					}
+				});
+			}
+			for(int t = 0; t < trials; t++){
+				Map.Entry<Integer, R> result = done.take().get();
+				collector.collect(result.getKey(), result.getValue());
+			}
+		}
+		catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while running trials", e);
+		}
+		catch(ExecutionException e){
+			if(e.getCause() instanceof RuntimeException){
+				throw (RuntimeException)e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+		finally{
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Runs trials 0 to trials - 1 and returns their results in trial order.
+	 * @param trials
+	 * @param trial
+	 * @return the results
+	 */
+	public List<R> run(int trials, Trial<R> trial){
+		final ArrayList<R> results = new ArrayList<R>(Collections.nCopies(trials, (R)null));
+		run(trials, trial, (t, r) -> results.set(t, r));
+		return results;
+	}
+}
@@ -0,0 +1,75 @@
+package model;
+
+import jdk.incubator.vector.*;
+
+/**
+ * The integration step of Spiking_Population written with the Java Vector API, so that several neurons are updated by each instruction.
+ * Every lane performs the same operations in the same order as Spiking_Population.integrate(), without fused multiply-adds, so the results are bit-identical.
+ * The thalamic choice between _b_1 and _b_2 and the spike reset are handled with lane masks rather than branches.
+ * This class needs the jdk.incubator.vector module and is only loaded when Spiking_Population.set_vectorized() has found it.
+ * @author Scaed
+ *
+ */
+final class Vector_Kernel {
+
+	private static final VectorSpecies<Double> _species = DoubleVector.SPECIES_PREFERRED;
+
+	private Vector_Kernel(){
+	}
+
+	/**
+	 * Advances the neurons of p from index from by one time step, one vector at a time, stopping before the range [from, to) runs out of whole vectors.
+	 * Spikes are not recorded and the outputs are not calculated, which is left to the caller.
+	 * @param p
+	 * @param from
+	 * @param to
+	 * @param noise the noise of each neuron for this time step
+	 * @param spiked set to whether each neuron spiked
+	 * @param quiet if not null, set to whether each neuron had no input and kept exactly the same membrane potential and u without spiking
+	 * @return the index of the first neuron that was not advanced
+	 */
+	static int integrate(Spiking_Population p, int from, int to, double[] noise, boolean[] spiked, boolean[] quiet){
+		final double[] mp = p._membrane_potential;
+		final double[] u = p._u;
+		final double[] input = p._input;
+		final double[] glut = p._glut_output;
+		final double[] gaba = p._gaba_output;
+		final DoubleVector zero = DoubleVector.zero(_species);
+		final DoubleVector b_1 = DoubleVector.broadcast(_species, p._b_1);
+		final DoubleVector b_2 = DoubleVector.broadcast(_species, p._b_2);
+
+		int i = from;
+		for(int end = from + _species.loopBound(to - from); i < end; i += _species.length()){
+			DoubleVector v_mp = DoubleVector.fromArray(_species, mp, i);
+			DoubleVector v_u = DoubleVector.fromArray(_species, u, i);
+			DoubleVector v_in = DoubleVector.fromArray(_species, input, i);
+			DoubleVector v_err = DoubleVector.fromArray(_species, noise, i);
+			DoubleVector old_mp = v_mp;
+			DoubleVector old_u = v_u;
+
+			DoubleVector b = b_2.blend(b_1, v_mp.compare(VectorOperators.LE, p._b_threshold));
+			DoubleVector u_change = b.mul(v_mp.sub(p._mp_rest_u)).sub(v_u).mul(p._a);
+			DoubleVector mp_change = v_mp.sub(p._mp_rest).mul(p._k).mul(v_mp.sub(p._threshold)).sub(v_u).add(v_in).add(v_err).div(p._C);
+
+			v_mp = v_mp.add(mp_change);
+			v_u = v_u.add(u_change);
+			VectorMask<Double> spike = v_mp.compare(VectorOperators.GE, v_u.mul(p._u_spike_threshold_factor).add(p._mp_spike_threshold));
+			DoubleVector u_reset = v_u.mul(p._u_spike_threshold_factor);
+			v_mp = v_mp.blend(u_reset.neg().add(p._reset), spike);
+			v_u = v_u.blend(v_u.add(p._u_spike_add), spike);
+
+			v_mp.intoArray(mp, i);
+			v_u.intoArray(u, i);
+			zero.intoArray(input, i);
+			zero.intoArray(glut, i);
+			zero.intoArray(gaba, i);
+			spike.intoArray(spiked, i);
+			if(quiet != null){
+				VectorMask<Long> same = v_mp.reinterpretAsLongs().compare(VectorOperators.EQ, old_mp.reinterpretAsLongs())
+						.and(v_u.reinterpretAsLongs().compare(VectorOperators.EQ, old_u.reinterpretAsLongs()));
+				same.cast(_species).and(v_in.compare(VectorOperators.EQ, 0.0)).andNot(spike).intoArray(quiet, i);
+			}
+		}
+		return i;
+	}
+}
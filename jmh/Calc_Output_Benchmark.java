@@ -0,0 +1,48 @@
+package model;
+
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures calc_output() as the number of spikes within the kernel horizon grows, for the table sum and for the recursive calculation.
+ * @author Scaed
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Thread)
+public class Calc_Output_Benchmark {
+
+	@Param({"1", "10", "100", "1000"})
+	public int spikes;
+
+	@Param({"false", "true"})
+	public boolean recursive;
+
+	private Spiking_Node _node;
+
+	/**
+	 * The spikes are spread evenly over the horizon of the glutamate kernel, ending at the current time.
+	 */
+	@Setup
+	public void setup(){
+		_node = new Spiking_GP_Node();
+		_node.set_spike_history(Math.max(spikes, 1), 0);
+		int horizon = _node.spike_horizon();
+		_node._t[0] = horizon;
+		for(int s = 0; s < spikes; s++){
+			_node.spike_history().record(horizon - (spikes - 1 - s) * (horizon / spikes));
+		}
+		_node.set_recursive_output(recursive);
+	}
+
+	@Benchmark
+	public double calc_output(){
+		_node.calc_output();
+		return _node.glut_output_value();
+	}
+}
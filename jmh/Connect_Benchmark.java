@@ -0,0 +1,57 @@
+package model;
+
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures the random connection generators of Synaptic_Connection and Presynaptic_Connection and Projection.random() at several densities.
+ * @author Scaed
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Thread)
+public class Connect_Benchmark {
+
+	@Param({"0.01", "0.1", "0.5"})
+	public double density;
+
+	private Node[] _sources;
+	private Node[] _receivers;
+	private Connection[] _connections;
+	private Spiking_Population _source_population;
+	private Spiking_Population _target_population;
+	private long _seed = 0;
+
+	@Setup
+	public void setup(){
+		_sources = new Node[200];
+		_receivers = new Node[200];
+		for(int i = 0; i < 200; i++){
+			_sources[i] = new Spiking_Striatal_Node();
+			_receivers[i] = new Spiking_GP_Node();
+		}
+		_connections = Synaptic_Connection.connect(_sources, _receivers, 10.0, 2.0, 0.05, 1L);
+		_source_population = Spiking_Population.striatal(2000);
+		_target_population = Spiking_Population.gp(2000);
+	}
+
+	@Benchmark
+	public Synaptic_Connection[] synaptic_connect(){
+		return Synaptic_Connection.connect(_sources, _receivers, 10.0, 2.0, density, _seed++);
+	}
+
+	@Benchmark
+	public Presynaptic_Connection[] presynaptic_connect(){
+		return Presynaptic_Connection.connect(_sources, _connections, -0.5, 0.1, density, _seed++);
+	}
+
+	@Benchmark
+	public Projection projection_random(){
+		return Projection.random(_source_population, _target_population, 10.0, 2.0, density, _seed++);
+	}
+}
@@ -0,0 +1,43 @@
+package model;
+
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Compares Synaptic_Connection.send() with Presynaptic_Connection.send() from an active spiking source.
+ * @author Scaed
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Thread)
+public class Connection_Send_Benchmark {
+
+	private Synaptic_Connection _synaptic;
+	private Presynaptic_Connection _presynaptic;
+
+	@Setup
+	public void setup(){
+		Spiking_Pyramidal_Node source = new Spiking_Pyramidal_Node();
+		Spiking_Pyramidal_Node receiver = new Spiking_Pyramidal_Node();
+		Spiking_Pyramidal_Node modulator = new Spiking_Pyramidal_Node();
+		source.DEBUG_set_glut_output(0.5);
+		modulator.DEBUG_set_gaba_output(0.5);
+		_synaptic = new Synaptic_Connection(source, receiver, 50.0);
+		_presynaptic = new Presynaptic_Connection(modulator, _synaptic, -0.8);
+	}
+
+	@Benchmark
+	public double synaptic_send(){
+		return _synaptic.send();
+	}
+
+	@Benchmark
+	public double presynaptic_send(){
+		return _presynaptic.send();
+	}
+}
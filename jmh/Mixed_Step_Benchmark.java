@@ -0,0 +1,56 @@
+package model;
+
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Steps 1000 nodes of all four Spiking_Node kinds, mixed in turn, through the virtual step() of Node and through the final Spiking_Node.integrate() used by Network.
+ * The first call site sees four receiver classes and so cannot be inlined by the JIT; the second always calls the same method.
+ * @author Scaed
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Thread)
+public class Mixed_Step_Benchmark {
+
+	private Node[] _nodes;
+	private Spiking_Node[] _spiking_nodes;
+
+	@Setup
+	public void setup(){
+		_nodes = new Node[1000];
+		_spiking_nodes = new Spiking_Node[1000];
+		for(int i = 0; i < _nodes.length; i++){
+			switch(i % 4){
+				case 0: _spiking_nodes[i] = new Spiking_Pyramidal_Node(); break;
+				case 1: _spiking_nodes[i] = new Spiking_Striatal_Node(); break;
+				case 2: _spiking_nodes[i] = new Spiking_GP_Node(); break;
+				default: _spiking_nodes[i] = new Spiking_Thalamic_Node(); break;
+			}
+			_nodes[i] = _spiking_nodes[i];
+		}
+	}
+
+	@Benchmark
+	public double step_virtual(){
+		for(Node n : _nodes){
+			n.set_input_to(500.0);
+			n.step();
+		}
+		return _spiking_nodes[0].membrane_potential_value();
+	}
+
+	@Benchmark
+	public double integrate_final(){
+		for(Spiking_Node n : _spiking_nodes){
+			n.set_input_to(500.0);
+			n.integrate();
+		}
+		return _spiking_nodes[0].membrane_potential_value();
+	}
+}
@@ -0,0 +1,44 @@
+package model;
+
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures step() of each Spiking_Node type with no input, where the neurons are mostly silent, and with 1000mA of input, where they fire steadily.
+ * @author Scaed
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Thread)
+public class Node_Step_Benchmark {
+
+	@Param({"PYRAMIDAL", "STRIATAL", "GP", "THALAMIC"})
+	public String type;
+
+	@Param({"0", "1000"})
+	public double input;
+
+	private Spiking_Node _node;
+
+	@Setup
+	public void setup(){
+		switch(type){
+			case "PYRAMIDAL": _node = new Spiking_Pyramidal_Node(); break;
+			case "STRIATAL": _node = new Spiking_Striatal_Node(); break;
+			case "GP": _node = new Spiking_GP_Node(); break;
+			default: _node = new Spiking_Thalamic_Node(); break;
+		}
+	}
+
+	@Benchmark
+	public double step(){
+		_node.set_input_to(input);
+		_node.step();
+		return _node.membrane_potential_value();
+	}
+}